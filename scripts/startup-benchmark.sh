@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+#
+# Воспроизводимый замер времени запуска бота.
+#
+# Сравнивает обычную сборку и сборку быстрого запуска (профиль Maven fast-startup).
+# Приложение каждый раз запускается до обновления контекста (-Dspring.context.exit=onRefresh)
+# и сразу завершается, поэтому Телеграм не нужен; база данных нужна только обычной сборке,
+# которая выполняет миграции Flyway при запуске (docker-compose up -d).
+#
+# Использование: scripts/startup-benchmark.sh [количество запусков, по умолчанию 10]
+# Результат: медиана и минимум времени запуска в миллисекундах для каждой сборки.
+
+set -euo pipefail
+
+RUNS="${1:-10}"
+WARMUP=2
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR_NAME="pandewtelegrambot-1.0-SNAPSHOT.jar"
+# Вне target: сборки ниже выполняют mvn clean
+OUT="${TMPDIR:-/tmp}/pandew-startup-benchmark"
+
+# Одинаковые параметры JVM для всех замеров
+JVM_OPTS=(-Xms256m -Xmx256m -XX:TieredStopAtLevel=1 -Dspring.context.exit=onRefresh)
+
+mkdir -p "$OUT"
+
+# Замер одного варианта: прогрев, затем RUNS запусков; печатает медиану и минимум
+measure() {
+    local name="$1"
+    shift
+    local times=()
+    for ((i = 0; i < WARMUP + RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        "$@" > "$OUT/$name.log" 2>&1
+        end=$(date +%s%N)
+        if ((i >= WARMUP)); then
+            times+=($(((end - start) / 1000000)))
+        fi
+    done
+    local sorted
+    sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    printf '%-12s median %6d ms   min %6d ms   (%d runs)\n' \
+        "$name" "${sorted[$((RUNS / 2))]}" "${sorted[0]}" "$RUNS"
+}
+
+cd "$ROOT"
+
+# Обычная сборка: встроенный веб-сервер, миграции при запуске
+mvn -B -q clean package spring-boot:repackage -DskipTests
+mkdir -p "$OUT/default"
+java -Djarmode=tools -jar "target/$JAR_NAME" extract --force --destination "$OUT/default"
+measure default java "${JVM_OPTS[@]}" -jar "$OUT/default/$JAR_NAME"
+
+# Сборка быстрого запуска: AOT, архив AppCDS, без веб-сервера и миграций
+mvn -B -q clean package -DskipTests -Pfast-startup
+measure fast-startup java "${JVM_OPTS[@]}" \
+    -XX:SharedArchiveFile=target/app/application.jsa \
+    -Dspring.aot.enabled=true -Dspring.profiles.active=fast \
+    -jar "target/app/$JAR_NAME"
@@ -0,0 +1,96 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замер накладных расходов диспетчеризации команд: разбор текста и поиск команды
+ * в {@link CommandRouter} в сравнении с прежним разбором через String.split и регулярные выражения.
+ * Команды-заглушки не обращаются к базе данных, поэтому замеряется только диспетчеризация.
+ *
+ * Запуск: mvn -Pjmh compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRouterBenchmark {
+
+    private static final String[] NAMES = {
+            "/help", "/start", "/viewTree", "/addElement", "/removeElement",
+            "/moveElement", "/renameElement", "/download", "/upload"};
+
+    @Param({"/viewTree", "/addElement Электроника   Смартфоны  и  планшеты", "/removeElement Смартфоны", "/unknown a b"})
+    public String text;
+
+    private CommandRouter router;
+    private final CommandBatchContext context = CommandBatchContext.single();
+
+    @Setup
+    public void setUp() {
+        router = new CommandRouter(List.of(
+                stub("/help", "/start"), stub("/viewTree"), stub("/addElement"), stub("/removeElement"),
+                stub("/moveElement"), stub("/renameElement"), stub("/download"), stub("/upload")));
+    }
+
+    @Benchmark
+    public String router() {
+        CommandTokens tokens = CommandTokens.parse(text);
+        Command command = router.find(tokens);
+        return command != null ? command.execute(tokens, "1", context) : null;
+    }
+
+    @Benchmark
+    public String legacySplit() {
+        String[] commandParts = text.trim().split(" ", 2);
+        for (String name : NAMES) {
+            if (name.equals(commandParts[0])) {
+                if (commandParts.length < 2) {
+                    return name;
+                }
+                // Разбор аргументов, как его выполняли /addElement и /removeElement
+                String cleaned = commandParts[1].trim().replaceAll("\\s+", " ");
+                return cleaned.matches("^[^\\s]+(\\s*)$") ? cleaned : cleaned.split(" ", 2)[0];
+            }
+        }
+        return null;
+    }
+
+    private static Command stub(String name, String... aliases) {
+        return new Command() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public List<String> aliases() {
+                return List.of(aliases);
+            }
+
+            @Override
+            public List<String> help() {
+                return List.of();
+            }
+
+            @Override
+            public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+                return tokens.count() > 2 ? tokens.joined(2) : name;
+            }
+        };
+    }
+}
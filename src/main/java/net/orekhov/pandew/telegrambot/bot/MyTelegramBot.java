@@ -1,16 +1,25 @@
 package net.orekhov.pandew.telegrambot.bot;
 
+import net.orekhov.pandew.telegrambot.jfr.CountingInputStream;
+import net.orekhov.pandew.telegrambot.jfr.TelegramExecuteEvent;
+import net.orekhov.pandew.telegrambot.jfr.UpdateReceivedEvent;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
 import net.orekhov.pandew.telegrambot.service.CommandHandler;
-import net.orekhov.pandew.telegrambot.service.ExcelImportService;
+import net.orekhov.pandew.telegrambot.service.ExportFormat;
+import net.orekhov.pandew.telegrambot.service.FileService;
+import net.orekhov.pandew.telegrambot.upload.UploadValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
@@ -20,6 +29,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
 
 /**
  * Этот класс представляет собой Телеграм-бота, который обрабатывает сообщения и загрузку файлов.
@@ -31,9 +43,9 @@ public class MyTelegramBot extends TelegramLongPollingBot {
     // Логгер для записи ошибок и информации
     private static final Logger logger = LoggerFactory.getLogger(MyTelegramBot.class);
 
-    // Сервисы для обработки команд и импорта данных из Excel
+    // Сервисы для обработки команд и импорта данных из файлов
     @Autowired
-    private ExcelImportService excelImportService;
+    private FileService fileService;
 
     @Lazy
     @Autowired
@@ -46,6 +58,31 @@ public class MyTelegramBot extends TelegramLongPollingBot {
     @Value("${telegram.bot.token}")
     private String botToken;
 
+    /**
+     * Создает бота с настройками получения обновлений.
+     *
+     * @param updatesLimit   максимальное количество обновлений в одном ответе getUpdates
+     * @param updatesTimeout время ожидания обновлений при длинном опросе, в секундах
+     */
+    public MyTelegramBot(@Value("${telegram.bot.updates.limit:100}") int updatesLimit,
+                         @Value("${telegram.bot.updates.timeout:50}") int updatesTimeout) {
+        super(createBotOptions(updatesLimit, updatesTimeout));
+    }
+
+    /**
+     * Создает настройки бота с заданными параметрами получения обновлений.
+     *
+     * @param updatesLimit   максимальное количество обновлений в одном ответе getUpdates
+     * @param updatesTimeout время ожидания обновлений при длинном опросе, в секундах
+     * @return настройки бота
+     */
+    private static DefaultBotOptions createBotOptions(int updatesLimit, int updatesTimeout) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setGetUpdatesLimit(updatesLimit);
+        options.setGetUpdatesTimeout(updatesTimeout);
+        return options;
+    }
+
     /**
      * Возвращает имя бота.
      *
@@ -66,6 +103,35 @@ public class MyTelegramBot extends TelegramLongPollingBot {
         return botToken;
     }
 
+    /**
+     * Обрабатывает пачку обновлений, полученную за один вызов getUpdates.
+     * Общие для команд пачки чтения (поиск категорий по названиям и построение дерева)
+     * выполняются один раз, после чего ответы рассылаются по чатам в порядке получения.
+     *
+     * @param updates пачка обновлений, полученная от Телеграма
+     */
+    @Override
+    public void onUpdatesReceived(List<Update> updates) {
+        List<String> commandTexts = new ArrayList<>();
+        for (Update update : updates) {
+            if (update.hasMessage() && update.getMessage().hasText()) {
+                commandTexts.add(update.getMessage().getText());
+            }
+        }
+
+        CommandBatchContext context;
+        try {
+            context = commandHandler.prepareBatch(commandTexts);
+        } catch (Exception e) {
+            logger.error("Ошибка подготовки пачки обновлений", e);
+            context = CommandBatchContext.single();
+        }
+
+        for (Update update : updates) {
+            handleUpdate(update, context, updates.size());
+        }
+    }
+
     /**
      * Обрабатывает обновления от Телеграма, такие как сообщения и загрузку документов.
      * Обрабатывает текстовые сообщения с командами и загрузку файлов Excel.
@@ -74,6 +140,43 @@ public class MyTelegramBot extends TelegramLongPollingBot {
      */
     @Override
     public void onUpdateReceived(Update update) {
+        handleUpdate(update, CommandBatchContext.single(), 1);
+    }
+
+    /**
+     * Обрабатывает одно обновление с использованием общих данных пачки
+     * и записывает событие JFR {@link UpdateReceivedEvent} с длительностью обработки.
+     *
+     * @param update    обновление, полученное от Телеграма
+     * @param context   контекст пачки команд
+     * @param batchSize количество обновлений в пачке
+     */
+    private void handleUpdate(Update update, CommandBatchContext context, int batchSize) {
+        UpdateReceivedEvent event = new UpdateReceivedEvent();
+        event.begin();
+        try {
+            processUpdate(update, context);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                Message message = update.getMessage();
+                event.updateId = update.getUpdateId() != null ? update.getUpdateId() : 0;
+                event.chatId = message != null ? String.valueOf(message.getChatId()) : null;
+                event.updateType = message != null && message.hasText() ? "text"
+                        : message != null && message.hasDocument() ? "document" : "other";
+                event.batchSize = batchSize;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает текстовое сообщение или загруженный документ из обновления.
+     *
+     * @param update  обновление, полученное от Телеграма
+     * @param context контекст пачки команд
+     */
+    private void processUpdate(Update update, CommandBatchContext context) {
         if (update.hasMessage()) {
             Message message = update.getMessage();
             String chatId = message.getChatId().toString();
@@ -81,12 +184,13 @@ public class MyTelegramBot extends TelegramLongPollingBot {
             try {
                 // Обрабатываем текстовые сообщения
                 if (message.hasText()) {
-                    String responseText = commandHandler.handleCommand(message.getText(), chatId);
+                    String responseText = commandHandler.handleCommand(message.getText(), chatId, context);
                     sendTextMessage(chatId, responseText);
                 }
                 // Обрабатываем загрузку документов (в данный момент только файлы Excel)
                 else if (message.hasDocument()) {
                     handleDocument(message.getDocument(), chatId);
+                    context.invalidate(); // Импорт мог изменить дерево категорий
                 }
             } catch (Exception e) {
                 logger.error("Ошибка обработки обновления", e);
@@ -106,52 +210,71 @@ public class MyTelegramBot extends TelegramLongPollingBot {
         message.setChatId(chatId);
         message.setText(text);
         try {
-            execute(message);
+            traced("SendMessage", chatId, text.length(), () -> execute(message));
         } catch (TelegramApiException e) {
             logger.error("Ошибка отправки сообщения", e);
         }
     }
 
     /**
-     * Обрабатывает загруженный документ. В данный момент проверяет, является ли документ файлом Excel,
-     * и пытается обработать его.
+     * Обрабатывает загруженный документ. Определяет формат файла по расширению
+     * (Excel, CSV или JSON) и импортирует из него дерево категорий.
+     * Файлы CSV и JSON разбираются потоково, по мере скачивания с сервера Telegram.
      *
      * @param document загруженный документ
      * @param chatId   идентификатор чата для отправки ответа
      */
     private void handleDocument(Document document, String chatId) {
+        // Категория, под которую пользователь попросил привить файл командой /upload <категория>.
+        // Сбрасывается только после успешной загрузки, чтобы исправленный файл попал туда же.
+        Long graftParentId = commandHandler.getUploadTarget(chatId);
         try {
-            // Проверяем MIME-тип файла
+            // Определяем формат по имени файла, а для файлов без расширения — по MIME-типу
             String mimeType = document.getMimeType();
-            if (mimeType != null && !mimeType.equals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")) {
-                sendTextMessage(chatId, "Пожалуйста, загрузите файл в формате Excel (.xlsx).");
-                return;
+            ExportFormat format = ExportFormat.fromFileName(document.getFileName()).orElse(null);
+            if (format == null && (mimeType == null || mimeType.equals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))) {
+                format = ExportFormat.XLSX;
             }
-
-            // Скачиваем файл Excel
-            byte[] fileBytes = downloadFileFromTelegram(document.getFileId());
-            logger.error("Скачиваем файл Excel с document.getFileId(){}", document.getFileId());
-            if (fileBytes.length == 0) {
-                sendTextMessage(chatId, "Не удалось загрузить файл.");
+            if (format == null) {
+                sendTextMessage(chatId, "Пожалуйста, загрузите файл в формате Excel (.xlsx), CSV (.csv, .csv.gz) или JSON (.json, .json.gz).");
                 return;
             }
 
-            // Импортируем категории из Excel файла
-            ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(fileBytes);
-            excelImportService.importCategoriesFromExcel(byteArrayInputStream);
+            if (format == ExportFormat.XLSX) {
+                // Скачиваем файл Excel
+                byte[] fileBytes = downloadFileFromTelegram(document.getFileId());
+                logger.error("Скачиваем файл Excel с document.getFileId(){}", document.getFileId());
+                if (fileBytes.length == 0) {
+                    sendTextMessage(chatId, "Не удалось загрузить файл.");
+                    return;
+                }
+
+                // Импортируем категории из Excel файла
+                fileService.importCategories(new ByteArrayInputStream(fileBytes), format, graftParentId);
+            } else {
+                // Импортируем категории из CSV или JSON, разбирая файл по мере скачивания
+                try (InputStream fileStream = openFileFromTelegram(document.getFileId())) {
+                    fileService.importCategories(fileStream, format, graftParentId);
+                }
+            }
+            commandHandler.clearUploadTarget(chatId, graftParentId);
 
             SendMessage response = new SendMessage();
             response.setChatId(chatId);
             response.setText("Дерево категорий успешно загружено из файла.");
-            execute(response);
+            traced("SendMessage", chatId, response.getText().length(), () -> execute(response));
+        } catch (UploadValidationException e) {
+            // Файл не сохранен: сообщаем пользователю ошибки по строкам файла
+            logger.info("Файл с деревом категорий не прошел проверку: {} ошибок", e.getErrors().size());
+            sendTextMessage(chatId, e.getMessage());
         } catch (Exception e) {
-            logger.error("Ошибка при загрузке Excel файла", e);
+            logger.error("Ошибка при загрузке файла с деревом категорий", e);
 
             SendMessage response = new SendMessage();
             response.setChatId(chatId);
             response.setText("Произошла ошибка при загрузке дерева категорий из файла.");
             try {
-                execute(response);
+                traced("SendMessage", chatId, response.getText().length(), () -> execute(response));
             } catch (TelegramApiException ex) {
                 logger.error("Ошибка при отправке сообщения", ex);
             }
@@ -159,33 +282,114 @@ public class MyTelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Скачивает файл с сервера Telegram по идентификатору файла.
+     * Отправляет документ в чат, записывая событие JFR о вызове Telegram Bot API.
      *
-     * @param fileId идентификатор файла для скачивания
-     * @return массив байтов, содержащий данные файла
+     * @param sendDocument запрос на отправку документа
+     * @return отправленное сообщение
+     * @throws TelegramApiException если отправка не удалась
      */
-    public byte[] downloadFileFromTelegram(String fileId) {
-        try {
-            // Получаем информацию о файле с сервера Telegram
-            GetFile getFile = new GetFile(fileId);
-            File file = execute(getFile);  // Получаем объект File
+    public Message sendDocument(SendDocument sendDocument) throws TelegramApiException {
+        // Подсчитываем байты, прочитанные из потока документа при отправке
+        InputFile document = sendDocument.getDocument();
+        if (document == null || !document.isNew() || document.getNewMediaStream() == null) {
+            return traced("SendDocument", sendDocument.getChatId(), -1, () -> execute(sendDocument));
+        }
+        CountingInputStream countingStream = new CountingInputStream(document.getNewMediaStream());
+        document.setMedia(countingStream, document.getMediaName());
+        return traced("SendDocument", sendDocument.getChatId(), message -> countingStream.getCount(), () -> execute(sendDocument));
+    }
 
-            String filePath = file.getFilePath();
-            if (filePath == null) {
-                throw new TelegramApiException("Путь к файлу отсутствует");
-            }
+    /**
+     * Открывает поток для чтения файла с сервера Telegram без загрузки файла целиком в память.
+     *
+     * @param fileId идентификатор файла для скачивания
+     * @return поток данных файла; его нужно закрыть после чтения
+     * @throws TelegramApiException если не удалось получить информацию о файле
+     * @throws IOException          если не удалось открыть соединение
+     */
+    public InputStream openFileFromTelegram(String fileId) throws TelegramApiException, IOException {
+        // Получаем информацию о файле с сервера Telegram
+        File file = traced("GetFile", null,
+                result -> result != null && result.getFileSize() != null ? result.getFileSize() : -1,
+                () -> execute(new GetFile(fileId)));
 
-            // Скачиваем файл по URL
-            URL fileUrl = new URL("https://api.telegram.org/file/bot" + getBotToken() + "/" + filePath);
-            InputStream inputStream = fileUrl.openStream();
+        String filePath = file.getFilePath();
+        if (filePath == null) {
+            throw new TelegramApiException("Путь к файлу отсутствует");
+        }
 
-            byte[] fileBytes = inputStream.readAllBytes();
-            inputStream.close();
+        // Открываем поток по URL файла
+        URL fileUrl = new URL("https://api.telegram.org/file/bot" + getBotToken() + "/" + filePath);
+        return fileUrl.openStream();
+    }
 
-            return fileBytes; // Возвращаем файл как массив байтов
+    /**
+     * Скачивает файл с сервера Telegram по идентификатору файла.
+     *
+     * @param fileId идентификатор файла для скачивания
+     * @return массив байтов, содержащий данные файла
+     */
+    public byte[] downloadFileFromTelegram(String fileId) {
+        try (InputStream inputStream = openFileFromTelegram(fileId)) {
+            return inputStream.readAllBytes(); // Возвращаем файл как массив байтов
         } catch (TelegramApiException | IOException e) {
             logger.error("Ошибка при скачивании файла", e);
             return new byte[0];  // Возвращаем пустой массив в случае ошибки
         }
     }
+
+    /**
+     * Вызов Telegram Bot API, который может завершиться исключением TelegramApiException.
+     */
+    @FunctionalInterface
+    private interface TelegramCall<T> {
+        T call() throws TelegramApiException;
+    }
+
+    /**
+     * Выполняет вызов Telegram Bot API, записывая событие JFR {@link TelegramExecuteEvent}.
+     *
+     * @param method      название метода Bot API
+     * @param chatId      идентификатор чата или null, если вызов не относится к чату
+     * @param payloadSize длина текста сообщения или -1, если неизвестна
+     * @param call        вызов execute()
+     * @return результат вызова
+     * @throws TelegramApiException если вызов завершился ошибкой
+     */
+    private <T> T traced(String method, String chatId, long payloadSize, TelegramCall<T> call) throws TelegramApiException {
+        return traced(method, chatId, result -> payloadSize, call);
+    }
+
+    /**
+     * Выполняет вызов Telegram Bot API, записывая событие JFR {@link TelegramExecuteEvent}.
+     * Размер данных определяется после вызова: например, число байт документа,
+     * прочитанных из потока при отправке, или размер файла из ответа GetFile.
+     *
+     * @param method      название метода Bot API
+     * @param chatId      идентификатор чата или null, если вызов не относится к чату
+     * @param payloadSize размер данных по результату вызова (null, если вызов завершился ошибкой)
+     * @param call        вызов execute()
+     * @return результат вызова
+     * @throws TelegramApiException если вызов завершился ошибкой
+     */
+    private <T> T traced(String method, String chatId, ToLongFunction<T> payloadSize, TelegramCall<T> call) throws TelegramApiException {
+        TelegramExecuteEvent event = new TelegramExecuteEvent();
+        event.begin();
+        boolean succeeded = false;
+        T result = null;
+        try {
+            result = call.call();
+            succeeded = true;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.chatId = chatId;
+                event.payloadSize = payloadSize.applyAsLong(result);
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+    }
 }
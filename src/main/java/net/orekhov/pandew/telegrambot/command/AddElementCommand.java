@@ -0,0 +1,90 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.model.Category;
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Команда /addElement: добавление корневой или дочерней категории.
+ * Название дочерней категории — всё после названия родителя, пробелы внутри сводятся к одному.
+ */
+@Component
+@Order(30)
+public class AddElementCommand implements Command {
+
+    private static final String USAGE = "Неверный формат команды. Используйте:\n" +
+            "/addElement <название категории>\n" +
+            "/addElement <родительская категория> <дочерняя категория>";
+
+    private static final List<String> HELP = List.of(
+            "/addElement <название категории> - Добавить корневую категорию.",
+            "/addElement <родительская категория> <дочерняя категория> - Добавить дочернюю категорию.");
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public AddElementCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/addElement";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        if (tokens.count() >= 3) {
+            names.add(tokens.token(1)); // Родительская категория
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.count() == 2) {
+            // Создание корневой категории.
+            String categoryName = tokens.token(1);
+            try {
+                categoryService.addCategory(categoryName, null);
+                context.categoryAdded(categoryName);
+                return "Корневая категория '" + categoryName + "' успешно добавлена.";
+            } catch (IllegalArgumentException e) {
+                return e.getMessage(); // Корневая категория с таким названием уже существует
+            } catch (Exception e) {
+                return "Произошла ошибка при добавлении корневой категории. Попробуйте снова.";
+            }
+        }
+        if (tokens.count() < 3) {
+            return USAGE;
+        }
+
+        // Добавление дочерней категории.
+        String parentCategoryName = tokens.token(1);
+        String childCategoryName = tokens.joined(2);
+        try {
+            Optional<Category> parentCategory = context.findCategory(parentCategoryName,
+                    () -> categoryService.getCategoryByName(parentCategoryName));
+            if (parentCategory.isEmpty()) {
+                return "Родительская категория '" + parentCategoryName + "' не найдена.";
+            }
+            categoryService.addCategory(childCategoryName, parentCategory.get());
+            context.categoryAdded(childCategoryName);
+            return "Дочерняя категория '" + childCategoryName + "' успешно добавлена к родительской категории '" + parentCategoryName + "'.";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage(); // Категория уже существует или родитель удален
+        } catch (Exception e) {
+            return "Произошла ошибка при добавлении дочерней категории. Попробуйте снова.";
+        }
+    }
+}
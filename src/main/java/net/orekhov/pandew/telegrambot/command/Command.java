@@ -0,0 +1,55 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Команда бота. Реализации регистрируются как компоненты Spring и находятся {@link CommandRouter}
+ * по имени; порядок компонентов (@Order) определяет порядок строк в справке.
+ */
+public interface Command {
+
+    /**
+     * Имя команды со слешем, например "/addElement".
+     *
+     * @return имя команды
+     */
+    String name();
+
+    /**
+     * Другие имена, по которым вызывается команда.
+     *
+     * @return список имен
+     */
+    default List<String> aliases() {
+        return List.of();
+    }
+
+    /**
+     * Строки справки по команде для /help.
+     *
+     * @return строки справки
+     */
+    List<String> help();
+
+    /**
+     * Выполнить команду.
+     *
+     * @param tokens  слова команды (слово 0 — имя команды)
+     * @param chatId  идентификатор чата
+     * @param context контекст пачки команд
+     * @return ответ пользователю
+     */
+    String execute(CommandTokens tokens, String chatId, CommandBatchContext context);
+
+    /**
+     * Добавить названия категорий, на которые ссылается команда, чтобы найти их
+     * заранее одним запросом для всей пачки команд.
+     *
+     * @param tokens слова команды
+     * @param names  названия категорий пачки
+     */
+    default void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+    }
+}
@@ -0,0 +1,78 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Таблица команд бота.
+ * Команды раскладываются по первому символу после слеша; поиск сравнивает имя команды
+ * прямо с областью исходного текста, без создания подстроки.
+ */
+@Component
+public class CommandRouter {
+
+    private static final int TABLE_SIZE = 128;
+
+    private final String[][] names = new String[TABLE_SIZE][];
+    private final Command[][] commands = new Command[TABLE_SIZE][];
+
+    /**
+     * Строит таблицу из всех зарегистрированных команд.
+     *
+     * @param registered компоненты команд
+     * @throws IllegalStateException если имя команды некорректно или повторяется
+     */
+    @Autowired
+    public CommandRouter(List<Command> registered) {
+        for (Command command : registered) {
+            register(command.name(), command);
+            command.aliases().forEach(alias -> register(alias, command));
+        }
+    }
+
+    /**
+     * Найти команду по первому слову сообщения.
+     *
+     * @param tokens слова команды
+     * @return команда или null, если команда неизвестна
+     */
+    public Command find(CommandTokens tokens) {
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        String text = tokens.text();
+        int start = tokens.start(0);
+        int length = tokens.end(0) - start;
+        if (length < 2 || text.charAt(start) != '/' || text.charAt(start + 1) >= TABLE_SIZE) {
+            return null;
+        }
+        int slot = text.charAt(start + 1);
+        String[] bucket = names[slot];
+        if (bucket == null) {
+            return null;
+        }
+        for (int i = 0; i < bucket.length; i++) {
+            if (bucket[i].length() == length && text.regionMatches(start, bucket[i], 0, length)) {
+                return commands[slot][i];
+            }
+        }
+        return null;
+    }
+
+    private void register(String name, Command command) {
+        if (name.length() < 2 || name.charAt(0) != '/' || name.charAt(1) >= TABLE_SIZE) {
+            throw new IllegalStateException("Некорректное имя команды: " + name);
+        }
+        int slot = name.charAt(1);
+        String[] bucket = names[slot] == null ? new String[0] : names[slot];
+        if (Arrays.asList(bucket).contains(name)) {
+            throw new IllegalStateException("Команда " + name + " зарегистрирована дважды.");
+        }
+        names[slot] = Arrays.copyOf(bucket, bucket.length + 1);
+        names[slot][bucket.length] = name;
+        commands[slot] = commands[slot] == null ? new Command[1] : Arrays.copyOf(commands[slot], bucket.length + 1);
+        commands[slot][bucket.length] = command;
+    }
+}
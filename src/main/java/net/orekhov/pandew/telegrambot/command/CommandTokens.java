@@ -0,0 +1,124 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import java.util.Arrays;
+
+/**
+ * Текст команды, разбитый на слова за один проход.
+ * Хранятся только границы слов в исходной строке; подстроки создаются лишь при обращении
+ * к конкретному слову, поэтому разбор не создает промежуточных массивов строк и регулярных выражений.
+ * Слова разделяются любыми пробельными символами; слово 0 — имя команды.
+ */
+public final class CommandTokens {
+
+    private static final CommandTokens EMPTY = new CommandTokens("", new int[0], 0);
+
+    private final String text;
+    private final int[] bounds; // Пары (начало, конец) слов
+    private final int count;
+
+    private CommandTokens(String text, int[] bounds, int count) {
+        this.text = text;
+        this.bounds = bounds;
+        this.count = count;
+    }
+
+    /**
+     * Разобрать текст команды.
+     *
+     * @param text текст сообщения (может быть null)
+     * @return слова команды
+     */
+    public static CommandTokens parse(String text) {
+        if (text == null) {
+            return EMPTY;
+        }
+        int[] bounds = new int[8];
+        int count = 0;
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == length) {
+                break;
+            }
+            int start = pos;
+            while (pos < length && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (2 * count + 2 > bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[2 * count] = start;
+            bounds[2 * count + 1] = pos;
+            count++;
+        }
+        return new CommandTokens(text, bounds, count);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Количество слов, включая имя команды.
+     *
+     * @return количество слов
+     */
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int start(int index) {
+        return bounds[2 * index];
+    }
+
+    public int end(int index) {
+        return bounds[2 * index + 1];
+    }
+
+    /**
+     * Слово с заданным номером.
+     *
+     * @param index номер слова
+     * @return слово
+     */
+    public String token(int index) {
+        return text.substring(start(index), end(index));
+    }
+
+    /**
+     * Текст от начала слова до конца последнего слова без изменений внутри.
+     *
+     * @param index номер первого слова
+     * @return остаток команды
+     */
+    public String rest(int index) {
+        return text.substring(start(index), end(count - 1));
+    }
+
+    /**
+     * Слова начиная с заданного, соединенные одиночными пробелами.
+     *
+     * @param index номер первого слова
+     * @return остаток команды с нормализованными пробелами
+     */
+    public String joined(int index) {
+        if (index == count - 1) {
+            return token(index);
+        }
+        StringBuilder builder = new StringBuilder(end(count - 1) - start(index));
+        for (int i = index; i < count; i++) {
+            if (i > index) {
+                builder.append(' ');
+            }
+            builder.append(text, start(i), end(i));
+        }
+        return builder.toString();
+    }
+}
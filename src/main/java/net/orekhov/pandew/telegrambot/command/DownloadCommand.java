@@ -0,0 +1,128 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.bot.MyTelegramBot;
+import net.orekhov.pandew.telegrambot.model.Category;
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import net.orekhov.pandew.telegrambot.service.ExportFormat;
+import net.orekhov.pandew.telegrambot.service.FileService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Команда /download [формат] [категория]: выгрузка дерева или поддерева категории в файл.
+ */
+@Component
+@Order(70)
+public class DownloadCommand implements Command {
+
+    private static final String SENT = "Файл успешно сгенерирован и отправлен.";
+    private static final String FAILED = "Произошла ошибка при создании или отправке файла. Попробуйте снова.";
+
+    private static final List<String> HELP = List.of(
+            "/download - Скачать дерево категорий в формате Excel.",
+            "/download csv|json - Скачать дерево категорий в компактном формате CSV или JSON (csv.gz, json.gz — со сжатием).",
+            "/download [формат] <название категории> - Скачать только поддерево категории.");
+
+    private final CategoryService categoryService;
+    private final FileService fileService;
+    private final MyTelegramBot myTelegramBot;
+
+    @Autowired
+    public DownloadCommand(CategoryService categoryService, FileService fileService, MyTelegramBot myTelegramBot) {
+        this.categoryService = categoryService;
+        this.fileService = fileService;
+        this.myTelegramBot = myTelegramBot;
+    }
+
+    @Override
+    public String name() {
+        return "/download";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        String categoryName = categoryArgument(tokens);
+        if (!categoryName.isEmpty()) {
+            names.add(categoryName);
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.count() == 1) {
+            return send(chatId, ExportFormat.XLSX, null); // Генерация и отправка Excel файла.
+        }
+
+        Optional<ExportFormat> format = ExportFormat.fromArgument(tokens.token(1));
+        String categoryName = categoryArgument(tokens);
+        if (categoryName.isEmpty()) {
+            categoryName = null;
+        }
+
+        Long rootId = null;
+        if (categoryName != null) {
+            try {
+                String name = categoryName;
+                Optional<Category> category = context.findCategory(name, () -> categoryService.getCategoryByName(name));
+                if (category.isEmpty()) {
+                    return "Категория '" + categoryName + "' не найдена.";
+                }
+                rootId = category.get().getId();
+            } catch (Exception e) {
+                return "Произошла ошибка при поиске категории '" + categoryName + "'. Попробуйте снова.";
+            }
+        }
+        return send(chatId, format.orElse(ExportFormat.XLSX), rootId);
+    }
+
+    /**
+     * Название категории из аргументов команды: весь текст после необязательного формата,
+     * поэтому название может содержать пробелы, как в /upload.
+     *
+     * @param tokens Слова команды.
+     * @return Название категории или пустая строка, если категория не указана.
+     */
+    private String categoryArgument(CommandTokens tokens) {
+        if (tokens.count() == 1) {
+            return "";
+        }
+        if (ExportFormat.fromArgument(tokens.token(1)).isPresent()) {
+            return tokens.count() > 2 ? tokens.rest(2) : "";
+        }
+        return tokens.rest(1);
+    }
+
+    /**
+     * Генерирует и отправляет файл с деревом категорий или поддеревом категории в заданном формате.
+     *
+     * @param chatId Идентификатор чата для отправки файла.
+     * @param format Формат файла.
+     * @param rootId Идентификатор корня поддерева или null для выгрузки всего дерева.
+     * @return Сообщение об успешной отправке или ошибке.
+     */
+    private String send(String chatId, ExportFormat format, Long rootId) {
+        // Генерация файла с помощью FileService; CSV и JSON читаются из базы данных по мере отправки.
+        try (InputStream fileInputStream = fileService.exportCategories(format, rootId)) {
+            SendDocument sendDocument = new SendDocument();
+            sendDocument.setChatId(chatId);
+            sendDocument.setDocument(new InputFile(fileInputStream, format.getFileName()));
+            myTelegramBot.sendDocument(sendDocument);
+            return SENT;
+        } catch (Exception e) {
+            return FAILED;
+        }
+    }
+}
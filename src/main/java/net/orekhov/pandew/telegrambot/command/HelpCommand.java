@@ -0,0 +1,57 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Команды /start и /help: список доступных команд.
+ * Текст справки собирается один раз из строк справки всех зарегистрированных команд.
+ */
+@Component
+@Order(10)
+public class HelpCommand implements Command {
+
+    private final ObjectProvider<Command> commands;
+
+    // Текст справки, собранный при первом обращении
+    private volatile String helpText;
+
+    @Autowired
+    public HelpCommand(ObjectProvider<Command> commands) {
+        this.commands = commands;
+    }
+
+    @Override
+    public String name() {
+        return "/help";
+    }
+
+    @Override
+    public List<String> aliases() {
+        return List.of("/start");
+    }
+
+    @Override
+    public List<String> help() {
+        return List.of(
+                "/start - Начало работы с ботом. Выводит список команд.",
+                "/help - Список доступных команд.");
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        String text = helpText;
+        if (text == null) {
+            text = commands.orderedStream()
+                    .flatMap(command -> command.help().stream())
+                    .collect(Collectors.joining("\n", "Доступные команды:\n", ""));
+            helpText = text;
+        }
+        return text;
+    }
+}
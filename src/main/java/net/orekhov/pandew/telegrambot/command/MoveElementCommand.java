@@ -0,0 +1,70 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Команда /moveElement: перемещение категории вместе с поддеревом под другого родителя.
+ */
+@Component
+@Order(50)
+public class MoveElementCommand implements Command {
+
+    private static final String USAGE = "Неверный формат команды. Используйте /moveElement <категория> <новая родительская категория>.";
+
+    private static final List<String> HELP = List.of("/moveElement <категория> <новая родительская категория> - Переместить категорию вместе с дочерними элементами.");
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public MoveElementCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/moveElement";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        if (tokens.count() == 3) {
+            names.add(tokens.token(1)); // Перемещаемая категория
+            names.add(tokens.token(2)); // Новый родитель
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.count() != 3) {
+            return USAGE;
+        }
+        String name = tokens.token(1);
+        String target = tokens.token(2);
+        try {
+            // Названия проверяются по категориям, найденным заранее для всей пачки команд
+            for (String referenced : List.of(name, target)) {
+                if (context.findCategory(referenced, () -> categoryService.getCategoryByName(referenced)).isEmpty()) {
+                    return "Категория '" + referenced + "' не найдена.";
+                }
+            }
+            categoryService.moveCategory(name, target);
+            context.invalidate();
+            return "Категория '" + name + "' перемещена в категорию '" + target + "'.";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        } catch (Exception e) {
+            return "Произошла ошибка при перемещении категории. Попробуйте снова.";
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Команда /removeElement: удаление категории вместе с дочерними элементами.
+ */
+@Component
+@Order(40)
+public class RemoveElementCommand implements Command {
+
+    private static final String USAGE = "Неверный формат команды. Используйте /removeElement <название категории>";
+
+    private static final List<String> HELP = List.of(
+            "/removeElement <название категории> - Удалить категорию и её дочерние элементы.");
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public RemoveElementCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/removeElement";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        if (tokens.count() == 2) {
+            names.add(tokens.token(1));
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        // Название категории — ровно одно слово
+        if (tokens.count() != 2) {
+            return tokens.count() == 1 ? USAGE + "." : USAGE;
+        }
+        String name = tokens.token(1);
+        if (context.findCategory(name, () -> categoryService.getCategoryByName(name)).isEmpty()) {
+            return "Категория '" + name + "' не найдена.";
+        }
+        categoryService.deleteCategory(name);
+        context.invalidate();
+        return "Категория " + name + " удалена!";
+    }
+}
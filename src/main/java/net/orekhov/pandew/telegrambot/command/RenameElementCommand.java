@@ -0,0 +1,66 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Команда /renameElement: переименование категории.
+ */
+@Component
+@Order(60)
+public class RenameElementCommand implements Command {
+
+    private static final String USAGE = "Неверный формат команды. Используйте /renameElement <категория> <новое название>.";
+
+    private static final List<String> HELP = List.of("/renameElement <категория> <новое название> - Переименовать категорию.");
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public RenameElementCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/renameElement";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        if (tokens.count() == 3) {
+            names.add(tokens.token(1)); // Переименовываемая категория
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.count() != 3) {
+            return USAGE;
+        }
+        String name = tokens.token(1);
+        String target = tokens.token(2);
+        try {
+            if (context.findCategory(name, () -> categoryService.getCategoryByName(name)).isEmpty()) {
+                return "Категория '" + name + "' не найдена.";
+            }
+            categoryService.renameCategory(name, target);
+            context.invalidate();
+            return "Категория '" + name + "' переименована в '" + target + "'.";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        } catch (Exception e) {
+            return "Произошла ошибка при переименовании категории. Попробуйте снова.";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.model.Category;
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Команда /upload [категория]: подготовка к загрузке файла с деревом категорий.
+ * Запоминает категорию, под которую будет привит следующий загруженный в чат файл.
+ */
+@Component
+@Order(80)
+public class UploadCommand implements Command {
+
+    private static final String SEND_FILE =
+            "Пожалуйста, отправьте файл Excel (.xlsx), CSV (.csv, .csv.gz) или JSON (.json, .json.gz) для загрузки дерева категорий.";
+
+    private static final List<String> HELP = List.of(
+            "/upload - Загрузить дерево категорий из файла Excel, CSV или JSON.",
+            "/upload <название категории> - Загрузить файл как поддерево указанной категории.");
+
+    private final CategoryService categoryService;
+
+    // Категории, под которые будет привит следующий загруженный в чат файл
+    private final Map<String, Long> uploadTargets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UploadCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/upload";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public void collectReferencedNames(CommandTokens tokens, Set<String> names) {
+        if (tokens.count() > 1) {
+            names.add(tokens.rest(1));
+        }
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.count() == 1) {
+            uploadTargets.remove(chatId);
+            return SEND_FILE;
+        }
+
+        String name = tokens.rest(1);
+        try {
+            Optional<Category> category = context.findCategory(name, () -> categoryService.getCategoryByName(name));
+            if (category.isEmpty()) {
+                return "Категория '" + name + "' не найдена.";
+            }
+            uploadTargets.put(chatId, category.get().getId());
+        } catch (Exception e) {
+            return "Произошла ошибка при поиске категории '" + name + "'. Попробуйте снова.";
+        }
+        return "Пожалуйста, отправьте файл Excel, CSV или JSON. Категории без родителя будут добавлены в категорию '" + name + "'.";
+    }
+
+    /**
+     * Возвращает категорию, под которую нужно привить загруженный в чат файл.
+     * Категория не сбрасывается: если файл не удалось загрузить, исправленный файл
+     * прививается под ту же категорию.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Идентификатор категории или null, если файл загружается во всё дерево.
+     */
+    public Long getUploadTarget(String chatId) {
+        return uploadTargets.get(chatId);
+    }
+
+    /**
+     * Сбрасывает категорию прививки после успешной загрузки файла.
+     * Если за время загрузки пользователь выбрал другую категорию, она сохраняется.
+     *
+     * @param chatId Идентификатор чата.
+     * @param target Категория, под которую был привит файл (null — файл загружен во всё дерево).
+     */
+    public void clearUploadTarget(String chatId, Long target) {
+        if (target != null) {
+            uploadTargets.remove(chatId, target);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.orekhov.pandew.telegrambot.command;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.service.CommandBatchContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * Команда /viewTree: отображает дерево категорий.
+ */
+@Component
+@Order(20)
+public class ViewTreeCommand implements Command {
+
+    private static final List<String> HELP = List.of("/viewTree - Отображает дерево категорий.");
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public ViewTreeCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    @Override
+    public String name() {
+        return "/viewTree";
+    }
+
+    @Override
+    public List<String> help() {
+        return HELP;
+    }
+
+    @Override
+    public String execute(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        return context.getTreeSnapshot(categoryService::viewTree); // Снимок дерева общий для пачки команд
+    }
+}
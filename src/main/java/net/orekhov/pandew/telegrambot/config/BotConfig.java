@@ -1,6 +1,9 @@
 package net.orekhov.pandew.telegrambot.config;
 
 import net.orekhov.pandew.telegrambot.bot.MyTelegramBot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
@@ -15,21 +18,38 @@ import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 public class BotConfig {
 
     /**
-     * Создает и настраивает экземпляр TelegramBotsApi для работы с Телеграм-ботом.
-     * Регистрирует бота для обработки обновлений.
+     * Создает экземпляр TelegramBotsApi для работы с Телеграм-ботом.
+     * Бот регистрируется не здесь, а после запуска приложения, чтобы обращения к Телеграму
+     * не задерживали создание контекста.
      *
-     * @param myTelegramBot экземпляр бота, который будет зарегистрирован в TelegramBotsApi
      * @return экземпляр TelegramBotsApi
-     * @throws TelegramApiException если произошла ошибка при регистрации бота
+     * @throws TelegramApiException если не удалось создать TelegramBotsApi
      */
     @Bean
-    public TelegramBotsApi telegramBotsApi(MyTelegramBot myTelegramBot) throws TelegramApiException {
+    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
         // Создаем объект TelegramBotsApi с использованием сессии по умолчанию
-        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-
-        // Регистрируем бота для обработки обновлений
-        botsApi.registerBot(myTelegramBot);
+        return new TelegramBotsApi(DefaultBotSession.class);
+    }
 
-        return botsApi;  // Возвращаем объект TelegramBotsApi для дальнейшего использования
+    /**
+     * Регистрирует бота для обработки обновлений, когда приложение полностью запущено.
+     * Регистрацию можно отключить свойством telegram.bot.enabled=false,
+     * например при однократном запуске для миграции схемы базы данных.
+     *
+     * @param botsApi       экземпляр TelegramBotsApi
+     * @param myTelegramBot экземпляр бота, который будет зарегистрирован в TelegramBotsApi
+     * @return слушатель события запуска приложения
+     */
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.enabled", havingValue = "true", matchIfMissing = true)
+    public ApplicationListener<ApplicationReadyEvent> telegramBotRegistration(TelegramBotsApi botsApi,
+                                                                              MyTelegramBot myTelegramBot) {
+        return event -> {
+            try {
+                botsApi.registerBot(myTelegramBot);
+            } catch (TelegramApiException e) {
+                throw new IllegalStateException("Не удалось зарегистрировать Телеграм-бота", e);
+            }
+        };
     }
 }
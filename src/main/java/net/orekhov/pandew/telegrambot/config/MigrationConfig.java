@@ -0,0 +1,30 @@
+package net.orekhov.pandew.telegrambot.config;
+
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Конфигурация однократного запуска для миграции схемы базы данных (профиль migrate).
+ * Миграции Flyway выполняются при создании контекста, после чего приложение завершается.
+ * Восстановление дерева из журнала, снимки и фоновая очистка в этом профиле не создаются
+ * ({@code @Profile("!migrate")}), а журнал изменений отключен в application-migrate.properties.
+ */
+@Configuration
+@Profile("migrate")
+public class MigrationConfig {
+
+    /**
+     * Завершает приложение сразу после запуска.
+     *
+     * @param context контекст приложения
+     * @return задача, выполняемая после запуска
+     */
+    @Bean
+    public ApplicationRunner exitAfterMigration(ConfigurableApplicationContext context) {
+        return args -> System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,74 @@
+package net.orekhov.pandew.telegrambot.controller;
+
+import net.orekhov.pandew.telegrambot.service.CategoryTreeJsonService;
+import net.orekhov.pandew.telegrambot.service.CategoryTreeJsonService.TreeJson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * HTTP API только для чтения дерева категорий.
+ *
+ * GET /api/tree — всё дерево, GET /api/tree/{name} — поддерево категории.
+ * Ответ содержит ETag по версии дерева: запрос с If-None-Match и неизменившимся деревом
+ * получает 304 без построения JSON. JSON пишется в ответ потоково, после того как копия узлов
+ * снята под блокировкой дерева. Сжатие gzip включается настройками server.compression.
+ */
+@RestController
+@RequestMapping("/api/tree")
+public class CategoryTreeController {
+
+    // Метка запуска: версия дерева начинается заново после перезапуска, и ETag не должен повториться
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    @Autowired
+    private CategoryTreeJsonService treeJsonService;
+
+    /**
+     * Получить всё дерево категорий.
+     *
+     * @param request запрос (для проверки If-None-Match)
+     * @return массив корневых категорий или 304
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getTree(WebRequest request) {
+        if (request.checkNotModified(etag(treeJsonService.currentVersion()))) {
+            return null; // Ответ 304 уже подготовлен
+        }
+        return response(treeJsonService.renderTree());
+    }
+
+    /**
+     * Получить поддерево категории.
+     *
+     * @param name    название категории
+     * @param request запрос (для проверки If-None-Match)
+     * @return категория с вложенными потомками или 304
+     */
+    @GetMapping("/{name}")
+    public ResponseEntity<StreamingResponseBody> getSubtree(@PathVariable String name, WebRequest request) {
+        if (request.checkNotModified(etag(treeJsonService.currentVersion()))) {
+            return null;
+        }
+        return response(treeJsonService.renderSubtree(name));
+    }
+
+    private ResponseEntity<StreamingResponseBody> response(TreeJson treeJson) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag(treeJson.version()))
+                .cacheControl(CacheControl.noCache())
+                .body(treeJson::writeTo);
+    }
+
+    private String etag(long version) {
+        return "W/\"" + epoch + "-" + version + "\"";
+    }
+}
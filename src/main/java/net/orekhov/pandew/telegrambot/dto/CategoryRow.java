@@ -0,0 +1,22 @@
+package net.orekhov.pandew.telegrambot.dto;
+
+/**
+ * Проекция строки экспорта категорий: название категории и название её родителя.
+ * Используется для потокового чтения категорий из базы данных без создания сущностей Category.
+ */
+public interface CategoryRow {
+
+    /**
+     * Получение имени категории.
+     *
+     * @return имя категории.
+     */
+    String getName();
+
+    /**
+     * Получение имени родительской категории.
+     *
+     * @return имя родительской категории или null, если категория корневая.
+     */
+    String getParentName();
+}
@@ -0,0 +1,30 @@
+package net.orekhov.pandew.telegrambot.dto;
+
+/**
+ * Проекция строки дерева категорий: идентификатор, идентификатор родителя и название.
+ * Используется для построения компактного дерева {@code CategoryTree} одним запросом,
+ * без загрузки сущностей Category и их дочерних коллекций.
+ */
+public interface CategoryTreeRow {
+
+    /**
+     * Получение идентификатора категории.
+     *
+     * @return идентификатор категории.
+     */
+    Long getId();
+
+    /**
+     * Получение идентификатора родительской категории.
+     *
+     * @return идентификатор родителя или null, если категория корневая.
+     */
+    Long getParentId();
+
+    /**
+     * Получение имени категории.
+     *
+     * @return имя категории.
+     */
+    String getName();
+}
@@ -0,0 +1,28 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: выполнение текстовой команды в {@code CommandHandler}.
+ */
+@Name("net.orekhov.pandew.CommandDispatch")
+@Label("Command Dispatch")
+@Category({"PanDew Bot", "Commands"})
+@Description("Выполнение команды бота")
+@StackTrace(false)
+public class CommandDispatchEvent extends jdk.jfr.Event {
+
+    @Label("Chat Id")
+    public String chatId;
+
+    @Label("Command")
+    public String command;
+
+    @Label("Response Length")
+    @Description("Длина текста ответа в символах")
+    public int responseLength;
+}
@@ -0,0 +1,38 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Поток, подсчитывающий количество записанных байт для событий JFR.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len); // Пишем массив целиком, а не по байту, как FilterOutputStream
+        count += len;
+    }
+
+    /**
+     * Количество байт, записанных в поток.
+     *
+     * @return количество байт
+     */
+    public long getCount() {
+        return count;
+    }
+}
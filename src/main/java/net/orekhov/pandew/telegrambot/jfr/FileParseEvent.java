@@ -0,0 +1,30 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: разбор загруженного файла с деревом категорий (Excel, CSV или JSON)
+ * в буфер строк. Проверка и сохранение строк в событие не входят.
+ */
+@Name("net.orekhov.pandew.FileParse")
+@Label("File Parse")
+@Category({"PanDew Bot", "Files"})
+@Description("Разбор загруженного файла в буфер строк, без проверки и сохранения")
+@StackTrace(false)
+public class FileParseEvent extends jdk.jfr.Event {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Bytes Read")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,29 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: построение файла выгрузки дерева категорий (Excel, CSV или JSON).
+ */
+@Name("net.orekhov.pandew.FileWrite")
+@Label("File Write")
+@Category({"PanDew Bot", "Files"})
+@Description("Выгрузка дерева категорий в файл")
+@StackTrace(false)
+public class FileWriteEvent extends jdk.jfr.Event {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Row Count")
+    public int rowCount;
+
+    @Label("Bytes Written")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
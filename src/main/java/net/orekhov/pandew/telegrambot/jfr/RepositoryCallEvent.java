@@ -0,0 +1,26 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: один вызов репозитория категорий из {@code CategoryService}.
+ */
+@Name("net.orekhov.pandew.RepositoryCall")
+@Label("Repository Call")
+@Category({"PanDew Bot", "Database"})
+@Description("Вызов CategoryRepository")
+@StackTrace(false)
+public class RepositoryCallEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("Имя метода репозитория")
+    public String operation;
+
+    @Label("Row Count")
+    @Description("Количество прочитанных или измененных строк")
+    public int rowCount;
+}
@@ -0,0 +1,31 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: один вызов Telegram Bot API через {@code execute()} в {@code MyTelegramBot}.
+ */
+@Name("net.orekhov.pandew.TelegramExecute")
+@Label("Telegram Execute")
+@Category({"PanDew Bot", "Telegram"})
+@Description("Вызов метода Telegram Bot API")
+@StackTrace(false)
+public class TelegramExecuteEvent extends jdk.jfr.Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Chat Id")
+    public String chatId;
+
+    @Label("Payload Size")
+    @Description("Длина текста сообщения в символах, размер файла в байтах или -1, если неизвестен")
+    public long payloadSize;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,33 @@
+package net.orekhov.pandew.telegrambot.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: обработка одного обновления, полученного от Телеграма.
+ * Охватывает всю обработку обновления, включая выполнение команды и отправку ответа.
+ */
+@Name("net.orekhov.pandew.UpdateReceived")
+@Label("Update Received")
+@Category({"PanDew Bot", "Telegram"})
+@Description("Обработка одного обновления Телеграма")
+@StackTrace(false)
+public class UpdateReceivedEvent extends jdk.jfr.Event {
+
+    @Label("Update Id")
+    public int updateId;
+
+    @Label("Chat Id")
+    public String chatId;
+
+    @Label("Update Type")
+    @Description("text, document или other")
+    public String updateType;
+
+    @Label("Batch Size")
+    @Description("Количество обновлений в пачке getUpdates")
+    public int batchSize;
+}
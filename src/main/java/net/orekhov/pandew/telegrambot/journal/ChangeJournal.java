@@ -0,0 +1,326 @@
+package net.orekhov.pandew.telegrambot.journal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений дерева категорий и его снимки на диске.
+ *
+ * Каждое изменение категорий (добавление, удаление, перемещение, переименование) дописывается
+ * в конец файла журнала после фиксации транзакции. Периодически дерево целиком записывается
+ * в двоичный снимок ({@link TreeSnapshot}), и журнал очищается. При запуске дерево
+ * восстанавливается из снимка и записей журнала, сделанных после него, без запросов к базе данных.
+ *
+ * Записи содержат итоговые значения (id, родитель, название), поэтому повторное применение
+ * записи, уже учтенной в снимке, не меняет результат. Источником истины остается база данных:
+ * журнал не синхронизируется с диском после каждой записи, а восстановленное дерево
+ * проверяется по базе данных в фоне.
+ *
+ * Запись: длина, номер записи, тип, данные записи и контрольная сумма CRC32.
+ * Неполная или поврежденная запись в конце файла (например, после аварийной остановки)
+ * отбрасывается при открытии журнала.
+ */
+@Component
+public class ChangeJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeJournal.class);
+
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final byte MOVE = 3;
+    private static final byte RENAME = 4;
+
+    private final boolean enabled;
+    private final Path journalFile;
+    private final Path snapshotFile;
+
+    private FileChannel channel;
+
+    // Номер последней записанной записи журнала
+    private long sequence;
+
+    // Номер последней записи, учтенной в снимке
+    private long snapshotSequence;
+
+    /**
+     * Конструктор журнала.
+     *
+     * @param enabled   вести ли журнал и снимки (category.journal.enabled)
+     * @param directory каталог файлов журнала и снимка (category.journal.dir)
+     */
+    public ChangeJournal(@Value("${category.journal.enabled:true}") boolean enabled,
+                         @Value("${category.journal.dir:data}") String directory) {
+        this.enabled = enabled;
+        this.journalFile = Paths.get(directory, "tree.journal");
+        this.snapshotFile = Paths.get(directory, "tree.snapshot");
+    }
+
+    /**
+     * Открыть файл журнала, отбросив неполную запись в его конце.
+     *
+     * @throws IOException если не удалось открыть журнал
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        if (Files.exists(snapshotFile)) {
+            try {
+                snapshotSequence = TreeSnapshot.readSequence(snapshotFile);
+            } catch (IOException e) {
+                logger.warn("Снимок дерева {} не читается и будет перезаписан.", snapshotFile, e);
+                Files.delete(snapshotFile);
+            }
+        }
+
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long[] lastSequence = {snapshotSequence};
+        long validLength = readRecords((recordSequence, type, data) -> lastSequence[0] = Math.max(lastSequence[0], recordSequence));
+        if (validLength < channel.size()) {
+            logger.warn("Журнал изменений {} обрезан до {} байт: запись в конце файла повреждена.", journalFile, validLength);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        sequence = lastSequence[0];
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Записать добавление категории.
+     *
+     * @param id       идентификатор категории
+     * @param parentId идентификатор родителя или null для корневой категории
+     * @param name     название категории
+     */
+    public void recordAdd(long id, Long parentId, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        record(ADD, 8 + 8 + 4 + nameBytes.length, buffer -> buffer
+                .putLong(id).putLong(parentId != null ? parentId : 0L).putInt(nameBytes.length).put(nameBytes));
+    }
+
+    /**
+     * Записать удаление категорий. Передаются идентификаторы категории и всех её потомков.
+     *
+     * @param ids идентификаторы удаленных категорий
+     */
+    public void recordDelete(Collection<Long> ids) {
+        record(DELETE, 4 + 8 * ids.size(), buffer -> {
+            buffer.putInt(ids.size());
+            ids.forEach(buffer::putLong);
+        });
+    }
+
+    /**
+     * Записать перемещение категории.
+     *
+     * @param id       идентификатор категории
+     * @param parentId идентификатор нового родителя
+     */
+    public void recordMove(long id, long parentId) {
+        record(MOVE, 8 + 8, buffer -> buffer.putLong(id).putLong(parentId));
+    }
+
+    /**
+     * Записать переименование категории.
+     *
+     * @param id   идентификатор категории
+     * @param name новое название
+     */
+    public void recordRename(long id, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        record(RENAME, 8 + 4 + nameBytes.length, buffer -> buffer.putLong(id).putInt(nameBytes.length).put(nameBytes));
+    }
+
+    /**
+     * Есть ли записи журнала, не учтенные в снимке.
+     *
+     * @return true, если снимок устарел или отсутствует
+     */
+    public synchronized boolean hasChanges() {
+        return enabled && (sequence != snapshotSequence || !Files.exists(snapshotFile));
+    }
+
+    /**
+     * Записать снимок дерева и очистить журнал.
+     * Дерево должно отражать все записанные записи журнала, поэтому метод вызывается
+     * при чтении дерева из кэша, пока изменения дерева заблокированы.
+     *
+     * @param tree дерево категорий
+     */
+    public synchronized void snapshot(CategoryTree tree) {
+        if (!enabled || channel == null) {
+            return;
+        }
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            TreeSnapshot.write(temporary, tree, sequence);
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.truncate(0);
+            channel.position(0);
+            snapshotSequence = sequence;
+            logger.info("Записан снимок дерева: {} категорий.", tree.size());
+        } catch (IOException e) {
+            logger.error("Не удалось записать снимок дерева {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Восстановить дерево из снимка и записей журнала, сделанных после него.
+     *
+     * @return дерево категорий или null, если снимка нет или его не удалось прочитать
+     */
+    public synchronized CategoryTree restore() {
+        if (!enabled || channel == null || !Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            TreeImage image = new TreeImage();
+            long fromSequence = TreeSnapshot.read(snapshotFile, image);
+            readRecords((recordSequence, type, data) -> {
+                if (recordSequence > fromSequence) {
+                    apply(image, type, data);
+                }
+            });
+            return image.toTree();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось восстановить дерево из снимка {} и журнала {}", snapshotFile, journalFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Записать изменение после фиксации текущей транзакции или сразу, если транзакции нет.
+     */
+    private void record(byte type, int dataSize, Consumer<ByteBuffer> data) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(type, dataSize, data);
+                }
+            });
+        } else {
+            append(type, dataSize, data);
+        }
+    }
+
+    /**
+     * Дописать запись в конец журнала.
+     */
+    private synchronized void append(byte type, int dataSize, Consumer<ByteBuffer> data) {
+        if (channel == null) {
+            return;
+        }
+        int bodySize = 8 + 1 + dataSize;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bodySize + 4);
+        buffer.putInt(bodySize).putLong(sequence + 1).put(type);
+        data.accept(buffer);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, bodySize);
+        buffer.putInt((int) crc.getValue()).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            sequence++;
+        } catch (IOException e) {
+            // Дерево, восстановленное без этой записи, будет исправлено проверкой по базе данных
+            logger.error("Не удалось дописать запись в журнал изменений {}", journalFile, e);
+        }
+    }
+
+    /**
+     * Прочитать все целые записи журнала по порядку.
+     *
+     * @param handler обработчик записей
+     * @return длина части файла, занятой целыми записями
+     * @throws IOException если не удалось прочитать журнал
+     */
+    private long readRecords(RecordHandler handler) throws IOException {
+        long length = channel.size();
+        if (length == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int bodySize = buffer.getInt();
+            if (bodySize < 9 || buffer.remaining() < bodySize + 4) {
+                return start;
+            }
+            ByteBuffer body = buffer.slice(buffer.position(), bodySize);
+            crc.reset();
+            crc.update(body.duplicate());
+            if (buffer.getInt(buffer.position() + bodySize) != (int) crc.getValue()) {
+                return start;
+            }
+            handler.accept(body.getLong(), body.get(), body);
+            buffer.position(buffer.position() + bodySize + 4);
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Применить запись журнала к набору строк дерева.
+     */
+    private static void apply(TreeImage image, byte type, ByteBuffer data) {
+        switch (type) {
+            case ADD -> image.put(data.getLong(), data.getLong(), readString(data));
+            case DELETE -> {
+                int count = data.getInt();
+                for (int i = 0; i < count; i++) {
+                    image.remove(data.getLong());
+                }
+            }
+            case MOVE -> image.setParent(data.getLong(), data.getLong());
+            case RENAME -> image.setName(data.getLong(), readString(data));
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private static String readString(ByteBuffer data) {
+        byte[] bytes = new byte[data.getInt()];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Обработчик записи журнала.
+     */
+    @FunctionalInterface
+    private interface RecordHandler {
+        void accept(long sequence, byte type, ByteBuffer data);
+    }
+}
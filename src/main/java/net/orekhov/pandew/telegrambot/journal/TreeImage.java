@@ -0,0 +1,107 @@
+package net.orekhov.pandew.telegrambot.journal;
+
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import java.util.Arrays;
+
+/**
+ * Изменяемый набор строк дерева (id, parentId, name), упорядоченный по id.
+ * В него читается снимок дерева и применяются записи журнала,
+ * после чего из него строится {@link CategoryTree}.
+ */
+final class TreeImage {
+
+    // Отметка удаленной строки в массиве родителей
+    private static final long REMOVED = -1L;
+
+    private long[] ids = new long[16];
+    private long[] parentIds = new long[16];
+    private String[] names = new String[16];
+    private int size;
+
+    /**
+     * Добавить или заменить категорию.
+     *
+     * @param id       идентификатор категории
+     * @param parentId идентификатор родителя или 0 для корневой категории
+     * @param name     название категории
+     */
+    void put(long id, long parentId, String name) {
+        int index = find(id);
+        if (index < 0) {
+            index = -index - 1;
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                parentIds = Arrays.copyOf(parentIds, capacity);
+                names = Arrays.copyOf(names, capacity);
+            }
+            // Обычно id новой категории больше всех существующих, и сдвигать ничего не нужно
+            if (index < size) {
+                System.arraycopy(ids, index, ids, index + 1, size - index);
+                System.arraycopy(parentIds, index, parentIds, index + 1, size - index);
+                System.arraycopy(names, index, names, index + 1, size - index);
+            }
+            ids[index] = id;
+            size++;
+        }
+        parentIds[index] = parentId;
+        names[index] = name;
+    }
+
+    /**
+     * Удалить категорию. Потомки удаляются отдельными вызовами.
+     *
+     * @param id идентификатор категории
+     */
+    void remove(long id) {
+        int index = find(id);
+        if (index >= 0) {
+            parentIds[index] = REMOVED;
+        }
+    }
+
+    /**
+     * Изменить родителя категории.
+     *
+     * @param id       идентификатор категории
+     * @param parentId идентификатор нового родителя или 0 для корневой категории
+     */
+    void setParent(long id, long parentId) {
+        int index = find(id);
+        if (index >= 0 && parentIds[index] != REMOVED) {
+            parentIds[index] = parentId;
+        }
+    }
+
+    /**
+     * Изменить название категории.
+     *
+     * @param id   идентификатор категории
+     * @param name новое название
+     */
+    void setName(long id, String name) {
+        int index = find(id);
+        if (index >= 0 && parentIds[index] != REMOVED) {
+            names[index] = name;
+        }
+    }
+
+    /**
+     * Построить дерево категорий из оставшихся строк.
+     *
+     * @return дерево категорий
+     */
+    CategoryTree toTree() {
+        CategoryTree.Builder builder = new CategoryTree.Builder();
+        for (int i = 0; i < size; i++) {
+            if (parentIds[i] != REMOVED) {
+                builder.add(ids[i], parentIds[i] == 0L ? null : parentIds[i], names[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    private int find(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+}
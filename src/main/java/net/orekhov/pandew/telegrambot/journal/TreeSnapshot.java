@@ -0,0 +1,145 @@
+package net.orekhov.pandew.telegrambot.journal;
+
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный снимок дерева категорий, записываемый и читаемый через отображенный в память файл.
+ *
+ * Формат: заголовок (сигнатура, версия формата, номер последней учтенной записи журнала,
+ * количество категорий и названий), таблица названий без повторов (длина и байты UTF-8),
+ * строки категорий (id, id родителя или 0, номер названия) по возрастанию id
+ * и контрольная сумма CRC32 всего предыдущего содержимого.
+ */
+final class TreeSnapshot {
+
+    private static final int MAGIC = 0x50445453; // "PDTS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+    private static final int ROW_SIZE = 8 + 8 + 4;
+
+    private TreeSnapshot() {
+    }
+
+    /**
+     * Записать снимок дерева в файл.
+     *
+     * @param file     файл снимка (перезаписывается)
+     * @param tree     дерево категорий
+     * @param sequence номер последней записи журнала, учтенной в дереве
+     * @throws IOException если не удалось записать файл
+     */
+    static void write(Path file, CategoryTree tree, long sequence) throws IOException {
+        Map<String, Integer> nameRefs = new HashMap<>();
+        List<byte[]> names = new ArrayList<>();
+        int[] rowNames = new int[tree.size() + 1];
+        long length = HEADER_SIZE + (long) ROW_SIZE * tree.size() + 4;
+        for (int node = 1; node <= tree.size(); node++) {
+            Integer ref = nameRefs.get(tree.name(node));
+            if (ref == null) {
+                ref = names.size();
+                nameRefs.put(tree.name(node), ref);
+                byte[] bytes = tree.name(node).getBytes(StandardCharsets.UTF_8);
+                names.add(bytes);
+                length += 4 + bytes.length;
+            }
+            rowNames[node] = ref;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(sequence).putInt(tree.size()).putInt(names.size());
+            for (byte[] name : names) {
+                buffer.putInt(name.length).put(name);
+            }
+            for (int node = 1; node <= tree.size(); node++) {
+                int parent = tree.parent(node);
+                buffer.putLong(tree.id(node))
+                        .putLong(parent == CategoryTree.ROOT ? 0L : tree.id(parent))
+                        .putInt(rowNames[node]);
+            }
+            buffer.putInt(checksum(buffer, buffer.position()));
+            buffer.force();
+        }
+    }
+
+    /**
+     * Прочитать снимок дерева из файла.
+     *
+     * @param file  файл снимка
+     * @param image набор строк, в который добавляются категории снимка
+     * @return номер последней записи журнала, учтенной в снимке
+     * @throws IOException если файл не удалось прочитать или он поврежден
+     */
+    static long read(Path file, TreeImage image) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE + 4 || length > Integer.MAX_VALUE) {
+                throw new IOException("Неверный размер снимка дерева: " + length);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int contentLength = (int) length - 4;
+            if (buffer.getInt(contentLength) != checksum(buffer, contentLength)) {
+                throw new IOException("Контрольная сумма снимка дерева не совпадает.");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Неизвестный формат снимка дерева.");
+            }
+            long sequence = buffer.getLong();
+            int size = buffer.getInt();
+            String[] names = new String[buffer.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < size; i++) {
+                long id = buffer.getLong();
+                long parentId = buffer.getLong();
+                image.put(id, parentId, names[buffer.getInt()]);
+            }
+            return sequence;
+        } catch (RuntimeException e) {
+            throw new IOException("Снимок дерева поврежден.", e);
+        }
+    }
+
+    /**
+     * Номер последней записи журнала, учтенной в снимке, без чтения категорий.
+     *
+     * @param file файл снимка
+     * @return номер записи
+     * @throws IOException если файл не удалось прочитать или он поврежден
+     */
+    static long readSequence(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Читаем заголовок целиком
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Неизвестный формат снимка дерева.");
+            }
+            return header.getLong();
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(0).limit(length));
+        return (int) crc.getValue();
+    }
+}
@@ -1,14 +1,28 @@
 package net.orekhov.pandew.telegrambot.repository;
 
+import jakarta.persistence.QueryHint;
+import net.orekhov.pandew.telegrambot.dto.CategoryRow;
+import net.orekhov.pandew.telegrambot.dto.CategoryTreeRow;
 import net.orekhov.pandew.telegrambot.model.Category;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий для работы с сущностью Category.
  * Наследует интерфейс JpaRepository, что предоставляет стандартные операции с базой данных.
+ *
+ * Удаленная командой категория сначала только скрывается (deleted = true, parent_id = NULL),
+ * а её потомки удаляются позже фоновым процессом. Потомки скрытой категории считаются скрытыми,
+ * поэтому запросы для чтения дерева начинают обход с видимых корневых категорий.
  */
 @Repository  // Аннотация для определения класса как репозитория Spring
 public interface CategoryRepository extends JpaRepository<Category, Long> {
@@ -30,6 +44,24 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
      */
     boolean existsByParentAndName(Category parent, String name);
 
+    /**
+     * Найти дочернюю категорию с данным родителем и названием.
+     *
+     * @param parent родительская категория
+     * @param name название категории
+     * @return Optional<Category> — категория, если найдена, иначе пустой Optional
+     */
+    Optional<Category> findByParentAndName(Category parent, String name);
+
+    /**
+     * Найти видимую корневую категорию с данным названием (по частичному индексу uk_category_root_name).
+     *
+     * @param name название категории
+     * @return Optional<Category> — категория, если найдена, иначе пустой Optional
+     */
+    @Query(value = "SELECT * FROM category c WHERE c.name = :name AND c.parent_id IS NULL AND NOT c.deleted", nativeQuery = true)
+    Optional<Category> findVisibleRootByName(@Param("name") String name);
+
    /**
             * Найти все категории по списку названий.
             *
@@ -37,4 +69,163 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
      * @return List<Category> — список категорий, чьи имена совпадают с элементами списка
      */
     List<Category> findByNameIn(List<String> names);
+
+    /**
+     * Проверить, что категория существует и не скрыта вместе с одним из своих предков.
+     * Путь до корня проходится рекурсивным запросом.
+     *
+     * @param id идентификатор категории
+     * @return true, если категория видима
+     */
+    @Query(value = "WITH RECURSIVE ancestors(id, parent_id, deleted) AS (" +
+            "SELECT c.id, c.parent_id, c.deleted FROM category c WHERE c.id = :id " +
+            "UNION " +
+            "SELECT p.id, p.parent_id, p.deleted FROM category p JOIN ancestors a ON p.id = a.parent_id) " +
+            "SELECT COUNT(*) > 0 AND NOT COALESCE(BOOL_OR(a.deleted), FALSE) FROM ancestors a",
+            nativeQuery = true)
+    boolean isVisible(@Param("id") Long id);
+
+    /**
+     * Потоково прочитать пары (имя категории, имя родителя) для всех видимых категорий.
+     * Строки читаются курсором базы данных порциями, без создания сущностей Category,
+     * поэтому поток нужно потреблять и закрывать внутри транзакции.
+     *
+     * @return Stream<CategoryRow> — поток строк в порядке добавления категорий
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "WITH RECURSIVE visible(id, name, parent_name) AS (" +
+            "SELECT c.id, c.name, CAST(NULL AS TEXT) FROM category c WHERE c.parent_id IS NULL AND NOT c.deleted " +
+            "UNION ALL " +
+            "SELECT c.id, c.name, CAST(v.name AS TEXT) FROM category c JOIN visible v ON c.parent_id = v.id) " +
+            "SELECT v.name AS \"name\", v.parent_name AS \"parentName\" FROM visible v ORDER BY v.id",
+            nativeQuery = true)
+    Stream<CategoryRow> streamAllRows();
+
+    /**
+     * Потоково прочитать строки (id, parentId, name) всех не скрытых категорий для построения дерева.
+     * Потомки скрытых категорий возвращаются, но в дерево не попадают: их поддерево не доходит до корня.
+     * Поток нужно потреблять и закрывать внутри транзакции.
+     *
+     * @return Stream<CategoryTreeRow> — поток строк в порядке возрастания id
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "SELECT c.id AS \"id\", c.parent_id AS \"parentId\", c.name AS \"name\" " +
+            "FROM category c WHERE NOT c.deleted ORDER BY c.id",
+            nativeQuery = true)
+    Stream<CategoryTreeRow> streamTreeRows();
+
+    /**
+     * Потоково прочитать пары (имя категории, имя родителя) для поддерева категории
+     * одним рекурсивным запросом. Для корня поддерева имя родителя не возвращается,
+     * поэтому выгрузка поддерева может быть загружена как самостоятельное дерево.
+     * Поток нужно потреблять и закрывать внутри транзакции.
+     *
+     * @param rootId идентификатор корня поддерева
+     * @return Stream<CategoryRow> — поток строк по уровням: родители раньше детей
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "WITH RECURSIVE subtree(id, name, parent_name, depth) AS (" +
+            "SELECT c.id, c.name, CAST(NULL AS TEXT), 0 FROM category c WHERE c.id = :rootId AND NOT c.deleted " +
+            "UNION ALL " +
+            "SELECT c.id, c.name, CAST(s.name AS TEXT), s.depth + 1 FROM category c JOIN subtree s ON c.parent_id = s.id) " +
+            "SELECT s.name AS \"name\", s.parent_name AS \"parentName\" FROM subtree s ORDER BY s.depth, s.id",
+            nativeQuery = true)
+    Stream<CategoryRow> streamSubtreeRows(@Param("rootId") Long rootId);
+
+    /**
+     * Добавить дочернюю категорию, если у родителя ещё нет дочерней категории с таким названием.
+     * Конфликт с ограничением уникальности (name, parent_id) не вызывает ошибку и не откатывает
+     * транзакцию: строка просто не добавляется. Корневые категории (parent_id = NULL) ограничение
+     * не затрагивает, они добавляются методом {@link #insertRootIfAbsent(String)}.
+     *
+     * @param name название категории
+     * @param parentId идентификатор родителя
+     * @return идентификатор добавленной категории или null, если такая категория уже есть
+     */
+    @Query(value = "INSERT INTO category (name, parent_id) VALUES (:name, :parentId) " +
+            "ON CONFLICT (name, parent_id) DO NOTHING RETURNING id",
+            nativeQuery = true)
+    Long insertIfAbsent(@Param("name") String name, @Param("parentId") Long parentId);
+
+    /**
+     * Добавить корневую категорию, если видимой корневой категории с таким названием ещё нет.
+     * Конфликт разрешается по частичному уникальному индексу uk_category_root_name
+     * (name при parent_id = NULL и NOT deleted) без ошибки и отката транзакции.
+     *
+     * @param name название категории
+     * @return идентификатор добавленной категории или null, если такая категория уже есть
+     */
+    @Query(value = "INSERT INTO category (name, parent_id) VALUES (:name, NULL) " +
+            "ON CONFLICT (name) WHERE parent_id IS NULL AND NOT deleted DO NOTHING RETURNING id",
+            nativeQuery = true)
+    Long insertRootIfAbsent(@Param("name") String name);
+
+    /**
+     * Переместить категорию под другого родителя, изменив одну строку.
+     *
+     * @param id идентификатор категории
+     * @param parentId идентификатор нового родителя
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE category SET parent_id = :parentId WHERE id = :id", nativeQuery = true)
+    int updateParent(@Param("id") Long id, @Param("parentId") Long parentId);
+
+    /**
+     * Переименовать категорию, изменив одну строку.
+     *
+     * @param id идентификатор категории
+     * @param name новое название
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE category SET name = :name WHERE id = :id", nativeQuery = true)
+    int updateName(@Param("id") Long id, @Param("name") String name);
+
+    /**
+     * Скрыть категории одной записью: отметить их удаленными и отсоединить от родителей,
+     * чтобы на их месте можно было сразу создать категории с теми же названиями.
+     * Потомки становятся скрытыми вместе с категориями и удаляются позже.
+     *
+     * @param ids идентификаторы скрываемых категорий
+     * @return количество измененных строк
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE category SET deleted = TRUE, parent_id = NULL WHERE id IN (:ids)", nativeQuery = true)
+    int softDelete(@Param("ids") List<Long> ids);
+
+    /**
+     * Найти скрытые категории, ожидающие физического удаления.
+     *
+     * @return List<Long> — идентификаторы скрытых категорий
+     */
+    @Query(value = "SELECT c.id FROM category c WHERE c.deleted ORDER BY c.id", nativeQuery = true)
+    List<Long> findDeletedIds();
+
+    /**
+     * Найти всех потомков категории одним рекурсивным запросом, начиная с самых глубоких,
+     * чтобы удалять их порциями без нарушения ссылок на родителя.
+     *
+     * @param rootId идентификатор категории
+     * @return List<Long> — идентификаторы потомков от листьев к корню
+     */
+    @Query(value = "WITH RECURSIVE subtree(id, depth) AS (" +
+            "SELECT c.id, 1 FROM category c WHERE c.parent_id = :rootId " +
+            "UNION ALL " +
+            "SELECT c.id, s.depth + 1 FROM category c JOIN subtree s ON c.parent_id = s.id) " +
+            "SELECT s.id FROM subtree s ORDER BY s.depth DESC, s.id",
+            nativeQuery = true)
+    List<Long> findDescendantIdsDeepestFirst(@Param("rootId") Long rootId);
 }
@@ -0,0 +1,48 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Фоновое удаление категорий, скрытых командой /removeElement.
+ * Периодически удаляет скрытые поддеревья порциями ограниченного размера с паузами между ними
+ * (см. {@link CategoryService#compactDeleted(int, long)}).
+ * При однократном запуске для миграции схемы (профиль migrate) сервис не создается.
+ */
+@Service
+@Profile("!migrate")
+public class CategoryCompactionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryCompactionService.class);
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Value("${category.compaction.batch-size:500}")
+    private int batchSize; // Количество строк, удаляемых в одной транзакции
+
+    @Value("${category.compaction.pause-millis:50}")
+    private long pauseMillis; // Пауза между порциями
+
+    /**
+     * Удалить скрытые категории вместе с потомками.
+     */
+    @Scheduled(fixedDelayString = "${category.compaction.interval:PT1M}")
+    public void compact() {
+        try {
+            int deleted = categoryService.compactDeleted(batchSize, pauseMillis);
+            if (deleted > 0) {
+                logger.info("Фоновое удаление: удалено {} категорий.", deleted);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Приложение останавливается
+        } catch (RuntimeException e) {
+            logger.error("Ошибка фонового удаления категорий", e);
+        }
+    }
+}
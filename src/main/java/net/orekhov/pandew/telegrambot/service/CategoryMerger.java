@@ -0,0 +1,21 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import net.orekhov.pandew.telegrambot.model.Category;
+
+/**
+ * Способ сохранения строки (имя, родитель), прочитанной из загружаемого файла.
+ * Позволяет одним и тем же разбором файлов Excel, CSV и JSON
+ * объединять строки со всем деревом или прививать их под заданного родителя.
+ */
+@FunctionalInterface
+public interface CategoryMerger {
+
+    /**
+     * Найти или создать категорию для строки файла.
+     *
+     * @param name Название категории.
+     * @param parentName Название родительской категории или пустая строка для корня файла.
+     * @return Найденная или созданная категория.
+     */
+    Category merge(String name, String parentName);
+}
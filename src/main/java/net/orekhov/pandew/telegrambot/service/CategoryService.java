@@ -1,28 +1,62 @@
 package net.orekhov.pandew.telegrambot.service;
 
+import net.orekhov.pandew.telegrambot.dto.CategoryTreeRow;
+import net.orekhov.pandew.telegrambot.jfr.RepositoryCallEvent;
+import net.orekhov.pandew.telegrambot.journal.ChangeJournal;
 import net.orekhov.pandew.telegrambot.model.Category;
 import net.orekhov.pandew.telegrambot.repository.CategoryRepository;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Сервис для управления категориями.
  * Включает методы для получения, добавления, удаления и отображения дерева категорий.
+ * Каждый вызов репозитория записывается событием JFR {@link RepositoryCallEvent}.
+ * Дерево категорий для чтения берется из {@link CategoryTreeCache}, который сбрасывается
+ * при добавлении и удалении категорий и обновляется на месте при перемещении и переименовании.
+ * Все изменения категорий записываются в {@link ChangeJournal}, из которого дерево восстанавливается при запуске.
+ * Удаление категории только скрывает её поддерево; строки удаляются позже методом {@link #compactDeleted(int, long)}.
  */
 @Service // Аннотация для определения класса как сервисного компонента Spring
 public class CategoryService {
 
     private static final Logger logger = LoggerFactory.getLogger(CategoryService.class);
 
+    // Названий в одном запросе findByNameIn при импорте файла
+    private static final int NAME_QUERY_CHUNK = 1000;
+
     @Autowired
     private CategoryRepository categoryRepository; // Репозиторий для работы с категориями
 
+    @Autowired
+    private CategoryTreeCache treeCache; // Дерево категорий в памяти
+
+    @Autowired
+    private TransactionTemplate transactionTemplate; // Транзакция для потокового чтения дерева
+
+    @Autowired
+    private ChangeJournal changeJournal; // Журнал изменений дерева на диске
+
+    // Блокировки добавления категорий по id родителя (0 для корневых категорий)
+    private final StripedLocks parentLocks = new StripedLocks(64);
+
     /**
      * Получить все категории.
      *
@@ -30,7 +64,35 @@ public class CategoryService {
      */
     @Transactional // Обозначение метода как транзакционного
     public List<Category> getAllCategories() {
-        return categoryRepository.findAll(); // Возвращаем все категории из базы данных
+        return repositoryCall("findAll", categoryRepository::findAll); // Возвращаем все категории из базы данных
+    }
+
+    /**
+     * Загрузить дерево категорий одним запросом в компактное представление.
+     * Поток строк читается в транзакции, поэтому метод можно вызывать и вне её.
+     *
+     * @return Дерево категорий.
+     */
+    public CategoryTree loadTree() {
+        CategoryTree.Builder builder = new CategoryTree.Builder();
+        transactionTemplate.executeWithoutResult(status -> repositoryCall("streamTreeRows", () -> {
+            try (Stream<CategoryTreeRow> rows = categoryRepository.streamTreeRows()) {
+                rows.forEach(row -> builder.add(row.getId(), row.getParentId(), row.getName()));
+            }
+            return builder.size();
+        }));
+        return builder.build();
+    }
+
+    /**
+     * Прочитать дерево категорий из кэша, загрузив его из базы данных при необходимости.
+     * Дерево нельзя сохранять и использовать вне переданной функции.
+     *
+     * @param reader Чтение дерева.
+     * @return Результат чтения.
+     */
+    public <T> T readTree(Function<CategoryTree, T> reader) {
+        return treeCache.read(this::loadTree, reader);
     }
 
     /**
@@ -39,148 +101,447 @@ public class CategoryService {
      *
      * @return Строковое представление дерева категорий.
      */
-    @Transactional // Обозначение метода как транзакционного
     public String viewTree() {
         logger.info("Отображение дерева категорий.");
-        List<Category> categories = getAllCategories(); // Получаем все категории
-        if (categories.isEmpty()) {
-            return "Дерево категорий пусто."; // Если категорий нет, возвращаем сообщение
-        }
+        return readTree(tree -> tree.isEmpty()
+                ? "Дерево категорий пусто." // Если категорий нет, возвращаем сообщение
+                : renderTree(tree));
+    }
 
+    /**
+     * Построить строковое представление дерева категорий.
+     * Узлы перечисляются в порядке обхода в глубину, отступ определяется глубиной узла.
+     *
+     * @param tree Дерево категорий.
+     * @return Строковое представление дерева категорий.
+     */
+    public String renderTree(CategoryTree tree) {
         StringBuilder builder = new StringBuilder("Дерево категорий:\n");
-        for (Category category : categories) {
-            if (category.getParent() == null) { // Только корневые категории
-                builder.append(printTreeElement(category, 0)); // Строим дерево
-            }
+        for (int pos = 1; pos < tree.positions(); pos++) {
+            int node = tree.nodeAt(pos);
+            builder.append("  ".repeat(tree.depth(node))).append("- ").append(tree.name(node)).append("\n"); // Отступ для вложенности
         }
         return builder.toString(); // Возвращаем строку с деревом категорий
     }
 
     /**
-     * Рекурсивный метод для отображения категории и её дочерних элементов.
+     * Найти категорию по названию в дереве категорий в памяти.
+     * Скрытые удалением категории и их потомки в дереве отсутствуют и не находятся.
      *
-     * @param category Категория, которую нужно отобразить.
-     * @param level Уровень вложенности категории в дереве.
-     * @return Строковое представление категории с её дочерними элементами.
+     * @param name Название категории.
+     * @return Опциональный объект, содержащий категорию с данным названием (если найдена).
      */
-    private String printTreeElement(Category category, int level) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("  ".repeat(level)).append("- ").append(category.getName()).append("\n"); // Отступ для вложенности
-        for (Category child : category.getChildren()) {
-            builder.append(printTreeElement(child, level + 1)); // Рекурсивно добавляем детей
+    public Optional<Category> getCategoryByName(String name) {
+        // В дереве есть только видимые категории, узлы упорядочены по id: находится категория с наименьшим id
+        Long id = readTree(tree -> {
+            int node = tree.findByName(name);
+            return node == CategoryTree.NONE ? null : tree.id(node);
+        });
+        if (id == null) {
+            return Optional.empty();
         }
-        return builder.toString();
+        return repositoryCall("findById", () -> categoryRepository.findById(id));
     }
 
     /**
-     * Найти категорию по названию.
+     * Найти категории по набору названий одним запросом.
+     * Названия, которым соответствует несколько категорий, в результат не попадают,
+     * чтобы поиск по ним выполнялся так же, как в {@link #getCategoryByName(String)}.
+     * Скрытые удалением категории отбрасываются по дереву категорий в памяти.
      *
-     * @param name Название категории.
-     * @return Опциональный объект, содержащий категорию с данным названием (если найдена).
+     * @param names Названия категорий.
+     * @return Отображение названия на единственную категорию с этим названием.
      */
-    public Optional<Category> getCategoryByName(String name) {
-        return categoryRepository.findByName(name); // Используем репозиторий для поиска категории по названию
+    @Transactional(readOnly = true)
+    public Map<String, Category> getCategoriesByNames(Collection<String> names) {
+        Map<String, Category> result = new HashMap<>();
+        if (names.isEmpty()) {
+            return result;
+        }
+        List<Category> found = repositoryCall("findByNameIn", () -> categoryRepository.findByNameIn(List.copyOf(names)));
+        List<Category> visible = readTree(tree -> found.stream()
+                .filter(category -> tree.indexOf(category.getId()) != CategoryTree.NONE)
+                .toList());
+        List<String> ambiguous = new ArrayList<>();
+        for (Category category : visible) {
+            if (result.putIfAbsent(category.getName(), category) != null) {
+                ambiguous.add(category.getName()); // Название не уникально
+            }
+        }
+        ambiguous.forEach(result::remove);
+        return result;
     }
 
     /**
      * Добавить новую категорию.
-     * Включает проверку на существование дочерней категории с таким же названием у родителя.
+     * Добавления под одним родителем выполняются по очереди под блокировкой, выбранной по id родителя,
+     * а под разными родителями — параллельно. Транзакция фиксируется до снятия блокировки.
+     * Повторное добавление категории разрешается запросом INSERT ... ON CONFLICT DO NOTHING,
+     * без ошибки ограничения уникальности и отката транзакции: для дочерних категорий по ограничению
+     * (name, parent_id), для корневых — по частичному уникальному индексу названий корней.
      *
      * @param name Название новой категории.
      * @param parent Родительская категория.
      * @return Добавленная категория.
-     * @throws IllegalArgumentException если родительская категория не найдена или дочерняя категория с таким названием уже существует.
+     * @throws IllegalArgumentException если родительская категория не найдена или категория с таким названием уже существует.
      */
-    @Transactional // Обозначение метода как транзакционного
     public Category addCategory(String name, Category parent) {
-        Category category = new Category(); // Создаем новую категорию
-        category.setName(name); // Устанавливаем название
-        category.setParent(parent); // Устанавливаем родительскую категорию
-
-        if (parent != null) {
-            // Загружаем родительскую категорию из базы данных
-            parent = categoryRepository.findById(parent.getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Родительская категория не найдена."));
-
-            // Загружаем коллекцию дочерних категорий, чтобы избежать LazyInitializationException
-            parent.getChildren().size();  // Принудительная загрузка дочерних категорий
+        Long parentId = parent != null ? parent.getId() : null;
+        Long id = insertIfAbsent(name, parentId, true);
+        if (id == null) {
+            // Строка не добавлена из-за конфликта: транзакция уже зафиксирована без изменений
+            throw new IllegalArgumentException(parentId == null
+                    ? "Корневая категория с таким названием уже существует."
+                    : "Дочерняя категория с таким названием уже существует.");
+        }
+        treeCache.invalidate(); // Дерево в памяти загрузится заново
+        changeJournal.recordAdd(id, parentId, name);
+        return repositoryCall("findById", () -> categoryRepository.findById(id)).orElseThrow();
+    }
 
-            // Проверяем, существует ли уже дочерняя категория с таким же названием
-            if (categoryRepository.existsByParentAndName(parent, name)) {
-                throw new IllegalArgumentException("Дочерняя категория с таким названием уже существует.");
+    /**
+     * Добавить строку категории под блокировкой, выбранной по id родителя, запросом
+     * INSERT ... ON CONFLICT DO NOTHING. Через этот метод проходят и команда /addElement, и импорт файлов,
+     * поэтому их добавления под одним родителем не нарушают ограничения уникальности.
+     *
+     * @param name Название категории.
+     * @param parentId Идентификатор родителя или null для корневой категории.
+     * @param checkParent Проверить, что родитель существует и не скрыт удалением.
+     * @return Идентификатор добавленной категории или null, если такая категория у родителя уже есть.
+     * @throws IllegalArgumentException если родительская категория не найдена.
+     */
+    private Long insertIfAbsent(String name, Long parentId, boolean checkParent) {
+        Supplier<Long> insert = () -> transactionTemplate.execute(status -> {
+            if (parentId == null) {
+                return repositoryCall("insertRootIfAbsent", () -> categoryRepository.insertRootIfAbsent(name));
+            }
+            // Родитель, скрытый удалением вместе с предком, считается отсутствующим:
+            // добавленная под ним категория не была бы видна и была бы удалена фоновым процессом
+            if (checkParent && !repositoryCall("isVisible", () -> categoryRepository.isVisible(parentId))) {
+                throw new IllegalArgumentException("Родительская категория не найдена.");
             }
+            return repositoryCall("insertIfAbsent", () -> categoryRepository.insertIfAbsent(name, parentId));
+        });
+        // Внутри общей транзакции импорта блокировка снималась бы до фиксации и не упорядочивала бы вставки,
+        // а /addElement, ждущий под ней незафиксированную строку импорта, заблокировал бы импорт навсегда.
+        // Конкурирующая вставка в этом случае ждет фиксации в PostgreSQL и разрешается ON CONFLICT без ошибки.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return insert.get();
+        }
+        return parentLocks.withLock(parentId != null ? parentId : 0L, insert);
+    }
 
-            // Добавляем категорию к родительской
-            parent.getChildren().add(category);
-            categoryRepository.save(category); // Сохраняем новую категорию
-            categoryRepository.save(parent); // Сохраняем обновленную родительскую категорию
-        } else {
-            // Если родитель не указан, сохраняем категорию без родителя
-            categoryRepository.save(category);
+    /**
+     * Создать способ сохранения строк файла, объединяющий их со всем деревом.
+     * Все названия файла (категорий и родителей) разрешаются заранее одним запросом,
+     * а скрытые удалением категории отбрасываются по дереву в памяти, поэтому при сохранении
+     * строк база данных только дописывается. Для каждого названия берется видимая категория
+     * с наименьшим id, как в {@link #getCategoryByName(String)}.
+     * Категория, которая уже есть в дереве, не создается повторно и не перемещается;
+     * родитель, не найденный ни в дереве, ни среди сохраненных строк файла, создается корневой.
+     *
+     * @param names Названия категорий и родителей из файла.
+     * @return Способ сохранения строк файла.
+     */
+    public CategoryMerger treeMerger(Collection<String> names) {
+        Map<String, Category> known = new HashMap<>();
+        if (!names.isEmpty()) {
+            // Названия запрашиваются частями, чтобы не превысить предел параметров запроса PostgreSQL
+            List<String> allNames = List.copyOf(names);
+            List<Category> found = new ArrayList<>();
+            for (int from = 0; from < allNames.size(); from += NAME_QUERY_CHUNK) {
+                List<String> chunk = allNames.subList(from, Math.min(from + NAME_QUERY_CHUNK, allNames.size()));
+                found.addAll(repositoryCall("findByNameIn", () -> categoryRepository.findByNameIn(chunk)));
+            }
+            readTree(tree -> {
+                for (Category category : found) {
+                    if (tree.indexOf(category.getId()) != CategoryTree.NONE) {
+                        known.merge(category.getName(), category,
+                                (first, second) -> first.getId() <= second.getId() ? first : second);
+                    }
+                }
+                return known.size();
+            });
         }
+        Set<Long> checkedParents = new HashSet<>();
+        return (name, parentName) -> {
+            Category parent = null;
+            if (parentName != null && !parentName.isEmpty()) {
+                parent = known.computeIfAbsent(parentName, key -> saveImported(key, null, checkedParents));
+            }
+            Category finalParent = parent;
+            return known.computeIfAbsent(name, key -> saveImported(key, finalParent, checkedParents));
+        };
+    }
 
-        return category; // Возвращаем добавленную категорию
+    /**
+     * Создать способ сохранения строк файла, прививающий их под заданную категорию.
+     * Строки без родителя становятся дочерними категориями родителя прививки,
+     * остальные ищут родителя среди категорий, уже прочитанных из этого же файла.
+     * Затрагиваются только категории поддерева, а не всё дерево.
+     *
+     * @param graftParentId Идентификатор категории, под которую прививается файл.
+     * @return Способ сохранения строк файла.
+     * @throws IllegalArgumentException если категория не найдена.
+     */
+    public CategoryMerger graftMerger(Long graftParentId) {
+        // Категория, скрытая удалением вместе с предком, считается отсутствующей, как в addCategory
+        Category graftParent = repositoryCall("findById", () -> categoryRepository.findById(graftParentId))
+                .filter(category -> repositoryCall("isVisible", () -> categoryRepository.isVisible(graftParentId)))
+                .orElseThrow(() -> new IllegalArgumentException("Категория для загрузки поддерева не найдена."));
+        Map<String, Category> imported = new HashMap<>();
+        Set<Long> checkedParents = new HashSet<>(List.of(graftParentId));
+        return (name, parentName) -> {
+            Category parent = graftParent;
+            if (parentName != null && !parentName.isEmpty()) {
+                parent = imported.get(parentName);
+                if (parent == null) {
+                    throw new IllegalArgumentException("Родительская категория '" + parentName + "' не найдена в загружаемом поддереве.");
+                }
+            }
+            Category category = saveImported(name, parent, checkedParents);
+            imported.put(name, category);
+            return category;
+        };
     }
 
     /**
      * Удалить категорию по имени, включая все дочерние категории.
-     * Включает удаление потомков и родительской категории.
+     * Категория скрывается одной записью в базе данных и сразу пропадает из дерева,
+     * а её потомки физически удаляются позже в фоне ({@link #compactDeleted(int, long)}),
+     * поэтому команда не ждет удаления больших поддеревьев.
      *
      * @param name Название категории для удаления.
      */
     @Transactional // Обозначение метода как транзакционного
     public void deleteCategory(String name) {
-        List<String> names = List.of(name);
-        List<Category> categories = categoryRepository.findByNameIn(names);
+        // Находим видимые категории с данным именем и собираем идентификаторы их поддеревьев
+        List<Long> rootIds = new ArrayList<>();
+        List<Long> hiddenIds = new ArrayList<>();
+        readTree(tree -> {
+            for (int node : tree.findAllByName(name)) {
+                if (tree.subtreeStart(node) == CategoryTree.NONE) {
+                    continue; // Категория недостижима из корня дерева
+                }
+                rootIds.add(tree.id(node));
+                for (int pos = tree.subtreeStart(node); pos < tree.subtreeEnd(node); pos++) {
+                    hiddenIds.add(tree.id(tree.nodeAt(pos)));
+                }
+            }
+            return null;
+        });
 
         // Проверка, если не найдено категорий с данным именем
-        if (categories.isEmpty()) {
+        if (rootIds.isEmpty()) {
             logger.info("Категория с именем '{}' не найдена.", name);
-        } else {
-            // Проходим по всем найденным категориям
-            for (Category category : categories) {
-                // Если категория не имеет дочерних элементов
-                if (category.getChildren().isEmpty()) {
-                    // Это категория-потомок, выводим только её имя
-                    logger.info("Категория (потомок) с именем '{}' найдена. Перечень всех найденных элементов: {}", name, category.getName());
-                    // Удаляем категорию-потомок
-                    categoryRepository.delete(category);
-                    logger.info("Категория (потомок) с именем '{}' удалена.", category.getName());
-                } else {
-                    // Это родительская категория, выводим всех потомков (включая вложенные)
-                    List<Category> allDescendants = getAllDescendants(category);
-                    String allDescendantNames = allDescendants.stream()
-                            .map(Category::getName)  // Получаем имя каждого потомка
-                            .reduce((name1, name2) -> name1 + ", " + name2)  // Объединяем имена потомков в одну строку
-                            .orElse("Нет потомков");  // Если нет потомков
-                    logger.info("Родительская категория с именем '{}' найдена. Список всех потомков: {}", name, allDescendantNames);
-
-                    // Удаляем все потомков
-                    for (Category descendant : allDescendants) {
-                        category.getChildren().remove(descendant);  // Удаляем потомка из родительской категории
-                        categoryRepository.delete(descendant);  // Удаляем саму категорию из базы данных
-                        logger.info("Потомок с именем '{}' удален из категории с именем '{}'.", descendant.getName(), category.getName());
-                    }
+            return;
+        }
+
+        // Скрываем категории одним запросом; потомки будут удалены в фоне
+        repositoryCall("softDelete", () -> categoryRepository.softDelete(rootIds));
+        logger.info("Категория с именем '{}' скрыта вместе с {} потомками, они будут удалены в фоне.",
+                name, hiddenIds.size() - rootIds.size());
+        treeCache.invalidate(); // Дерево в памяти загрузится заново
+        changeJournal.recordDelete(hiddenIds);
+    }
 
-                    // Теперь удаляем родительскую категорию
-                    categoryRepository.delete(category);
-                    logger.info("Родительская категория с именем '{}' удалена.", category.getName());
+    /**
+     * Физически удалить скрытые категории вместе с потомками.
+     * Потомки удаляются порциями от самых глубоких к корню, каждая порция — в отдельной короткой
+     * транзакции, с паузой между порциями, чтобы не держать блокировки долго и не мешать командам.
+     * Дерево в памяти не меняется: скрытые категории в нём уже отсутствуют.
+     *
+     * @param batchSize Количество строк, удаляемых в одной транзакции.
+     * @param pauseMillis Пауза между порциями в миллисекундах.
+     * @return Количество удаленных строк.
+     * @throws InterruptedException если поток прерван во время паузы.
+     */
+    public int compactDeleted(int batchSize, long pauseMillis) throws InterruptedException {
+        int deleted = 0;
+        for (Long rootId : repositoryCall("findDeletedIds", categoryRepository::findDeletedIds)) {
+            // Повторяем, пока у скрытой категории есть потомки: под неё могли привить файл во время удаления
+            List<Long> descendantIds;
+            while (!(descendantIds = repositoryCall("findDescendantIdsDeepestFirst",
+                    () -> categoryRepository.findDescendantIdsDeepestFirst(rootId))).isEmpty()) {
+                for (int from = 0; from < descendantIds.size(); from += batchSize) {
+                    List<Long> batch = descendantIds.subList(from, Math.min(from + batchSize, descendantIds.size()));
+                    deleted += deleteBatch(batch);
+                    Thread.sleep(pauseMillis);
                 }
             }
+            deleted += deleteBatch(List.of(rootId));
+            logger.info("Скрытая категория с id {} удалена вместе с потомками.", rootId);
         }
+        return deleted;
     }
 
     /**
-     * Рекурсивный метод для получения всех потомков категории.
+     * Удалить порцию категорий в отдельной транзакции.
      *
-     * @param parent Родительская категория.
-     * @return Список всех потомков категории (включая вложенные).
+     * @param ids Идентификаторы категорий, потомки которых уже удалены или входят в ту же порцию.
+     * @return Количество удаленных строк.
+     */
+    private int deleteBatch(List<Long> ids) {
+        transactionTemplate.executeWithoutResult(status -> repositoryCall("deleteAllByIdInBatch", () -> {
+            categoryRepository.deleteAllByIdInBatch(ids);
+            return ids.size();
+        }));
+        return ids.size();
+    }
+
+    /**
+     * Переместить категорию вместе с поддеревом под другого родителя.
+     * Изменяется одна строка в базе данных; проверка на цикл выполняется по дереву в памяти,
+     * а само дерево в памяти обновляется на месте, без повторной загрузки.
+     *
+     * @param name Название перемещаемой категории.
+     * @param newParentName Название нового родителя.
+     * @throws IllegalArgumentException если категории не найдены, перемещение создает цикл
+     *                                  или у нового родителя уже есть категория с таким названием.
+     */
+    public void moveCategory(String name, String newParentName) {
+        treeCache.update(this::loadTree, tree -> {
+            int node = findUniqueNode(tree, name);
+            int newParent = findUniqueNode(tree, newParentName);
+            if (tree.isAncestor(node, newParent)) {
+                throw new IllegalArgumentException("Нельзя переместить категорию '" + name + "' внутрь её собственного поддерева.");
+            }
+            if (tree.findChild(newParent, name) != CategoryTree.NONE) {
+                throw new IllegalArgumentException("У категории '" + newParentName + "' уже есть дочерняя категория '" + name + "'.");
+            }
+
+            long id = tree.id(node);
+            long parentId = tree.id(newParent);
+            int updated = repositoryCall("updateParent", () -> categoryRepository.updateParent(id, parentId));
+            if (updated == 0) {
+                throw new IllegalStateException("Категория '" + name + "' не найдена в базе данных.");
+            }
+            tree.move(node, newParent);
+            changeJournal.recordMove(id, parentId);
+            logger.info("Категория '{}' перемещена в категорию '{}'.", name, newParentName);
+        });
+    }
+
+    /**
+     * Переименовать категорию, изменив одну строку в базе данных.
+     * Дерево в памяти обновляется на месте, без повторной загрузки.
+     *
+     * @param name Текущее название категории.
+     * @param newName Новое название категории.
+     * @throws IllegalArgumentException если категория не найдена
+     *                                  или у её родителя уже есть категория с новым названием.
+     */
+    public void renameCategory(String name, String newName) {
+        treeCache.update(this::loadTree, tree -> {
+            int node = findUniqueNode(tree, name);
+            if (tree.findChild(tree.parent(node), newName) != CategoryTree.NONE) {
+                throw new IllegalArgumentException("Категория с названием '" + newName + "' уже есть на этом уровне.");
+            }
+
+            long id = tree.id(node);
+            int updated = repositoryCall("updateName", () -> categoryRepository.updateName(id, newName));
+            if (updated == 0) {
+                throw new IllegalStateException("Категория '" + name + "' не найдена в базе данных.");
+            }
+            tree.rename(node, newName);
+            changeJournal.recordRename(id, newName);
+            logger.info("Категория '{}' переименована в '{}'.", name, newName);
+        });
+    }
+
+    /**
+     * Найти в дереве единственную категорию с заданным названием.
+     *
+     * @param tree Дерево категорий.
+     * @param name Название категории.
+     * @return Индекс узла.
+     * @throws IllegalArgumentException если категория не найдена или название не уникально.
+     */
+    private int findUniqueNode(CategoryTree tree, String name) {
+        int[] nodes = tree.findAllByName(name);
+        if (nodes.length == 0) {
+            throw new IllegalArgumentException("Категория '" + name + "' не найдена.");
+        }
+        if (nodes.length > 1) {
+            throw new IllegalArgumentException("Найдено несколько категорий с названием '" + name + "'.");
+        }
+        return nodes[0];
+    }
+
+    /**
+     * Сохранить категорию из загружаемого файла тем же запросом и под той же блокировкой, что и /addElement.
+     * Если у родителя уже есть категория с таким названием (в том числе добавленная параллельно),
+     * возвращается она. Видимость каждого родителя проверяется один раз за импорт.
+     *
+     * @param name Название категории.
+     * @param parent Родительская категория или null для корневой категории.
+     * @param checkedParents Идентификаторы родителей, видимость которых уже проверена.
+     * @return Добавленная или уже существующая категория.
+     * @throws IllegalArgumentException если родительская категория не найдена.
+     */
+    private Category saveImported(String name, Category parent, Set<Long> checkedParents) {
+        Long parentId = parent != null ? parent.getId() : null;
+        Long id = insertIfAbsent(name, parentId, parentId != null && !checkedParents.contains(parentId));
+        if (parentId != null) {
+            checkedParents.add(parentId);
+        }
+        if (id == null) {
+            return repositoryCall(parentId == null ? "findVisibleRootByName" : "findByParentAndName", () -> parentId == null
+                    ? categoryRepository.findVisibleRootByName(name)
+                    : categoryRepository.findByParentAndName(parent, name)).orElseThrow();
+        }
+        treeCache.invalidate();
+        changeJournal.recordAdd(id, parentId, name);
+        return repositoryCall("findById", () -> categoryRepository.findById(id)).orElseThrow();
+    }
+
+    /**
+     * Выполнить вызов репозитория, записав событие JFR с его длительностью и количеством строк.
+     * При выключенной записи JFR накладные расходы сводятся к созданию объекта события.
+     *
+     * @param operation Имя метода репозитория.
+     * @param call Вызов репозитория.
+     * @return Результат вызова.
      */
-    private List<Category> getAllDescendants(Category parent) {
-        List<Category> descendants = new ArrayList<>(parent.getChildren());
-        for (Category child : parent.getChildren()) {
-            descendants.addAll(getAllDescendants(child));  // Рекурсивный вызов для дочерних категорий
+    private <T> T repositoryCall(String operation, Supplier<T> call) {
+        RepositoryCallEvent event = new RepositoryCallEvent();
+        event.begin();
+        T result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.rowCount = rowCount(result);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Определить количество строк по результату вызова репозитория.
+     *
+     * @param result Результат вызова.
+     * @return Количество прочитанных или измененных строк.
+     */
+    private static int rowCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Boolean exists) {
+            return exists ? 1 : 0;
+        }
+        if (result instanceof Number number) {
+            return number.intValue();
         }
-        return descendants;
+        return 1;
     }
 }
@@ -0,0 +1,156 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Кэш компактного дерева категорий в памяти.
+ * Дерево загружается из базы данных при первом обращении и затем поддерживается в актуальном виде:
+ * перемещения и переименования применяются к дереву на месте, а после остальных изменений
+ * (добавление, удаление, импорт) дерево сбрасывается и загружается заново.
+ *
+ * Чтения выполняются под общей блокировкой, изменения — под исключительной.
+ * Каждое изменение увеличивает версию дерева.
+ */
+@Component
+public class CategoryTreeCache {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Текущее дерево или null, если его нужно загрузить заново
+    private CategoryTree tree;
+
+    // Версия дерева, увеличивается при каждом изменении
+    private volatile long version;
+
+    /**
+     * Прочитать дерево под общей блокировкой, загрузив его при необходимости.
+     *
+     * @param loader загрузка дерева из базы данных
+     * @param reader чтение дерева; дерево нельзя использовать вне этой функции
+     * @return результат чтения
+     */
+    public <T> T read(Supplier<CategoryTree> loader, Function<CategoryTree, T> reader) {
+        lock.readLock().lock();
+        try {
+            if (tree != null) {
+                return reader.apply(tree);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Дерево не загружено: загружаем под исключительной блокировкой и понижаем её до общей
+        lock.writeLock().lock();
+        try {
+            if (tree == null) {
+                tree = loader.get();
+            }
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            return reader.apply(tree);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Изменить дерево под исключительной блокировкой, загрузив его при необходимости.
+     * Пока выполняется изменение, другие чтения и изменения дерева ждут.
+     *
+     * @param loader  загрузка дерева из базы данных
+     * @param updater изменение дерева
+     */
+    public void update(Supplier<CategoryTree> loader, Consumer<CategoryTree> updater) {
+        lock.writeLock().lock();
+        try {
+            if (tree == null) {
+                tree = loader.get();
+            }
+            updater.accept(tree);
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сбросить дерево после изменения категорий в базе данных.
+     * Если изменение выполняется в транзакции, дерево сбрасывается ещё раз после её фиксации,
+     * чтобы параллельное чтение не закэшировало состояние до фиксации. Сброс после фиксации
+     * регистрируется один раз на транзакцию, сколько бы строк в ней ни изменялось.
+     */
+    public void invalidate() {
+        reset();
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reset();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CategoryTreeCache.this);
+                }
+            });
+        }
+    }
+
+    /**
+     * Заменить дерево, если с момента получения версии оно не изменялось и не сбрасывалось.
+     * Используется для установки дерева, загруженного вне блокировки: восстановленного из снимка
+     * или проверочно загруженного из базы данных.
+     *
+     * @param expectedVersion версия, полученная до загрузки нового дерева
+     * @param replacer        выбор нового дерева по текущему (текущее может быть null)
+     * @return true, если версия не изменилась и замена выполнена
+     */
+    public boolean replace(long expectedVersion, UnaryOperator<CategoryTree> replacer) {
+        lock.writeLock().lock();
+        try {
+            if (version != expectedVersion) {
+                return false;
+            }
+            CategoryTree replacement = replacer.apply(tree);
+            if (replacement != tree) {
+                tree = replacement;
+                version++;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Версия дерева: увеличивается при каждом изменении категорий.
+     *
+     * @return текущая версия дерева
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void reset() {
+        lock.writeLock().lock();
+        try {
+            tree = null;
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Сервис представления дерева категорий в JSON для HTTP API.
+ *
+ * Под блокировкой чтения дерева копируются только id, названия (ссылки на строки дерева)
+ * и глубины узлов нужного диапазона в порядке обхода. JSON пишется потоковым генератором
+ * из этой копии прямо в ответ, уже без блокировки, поэтому медленный клиент не задерживает
+ * изменения дерева, а ответ целиком в памяти не собирается. Копия всего дерева запоминается
+ * вместе с версией дерева и строится заново только после изменения категорий.
+ *
+ * Узел: {"id": 1, "name": "...", "children": [...]}.
+ */
+@Service
+public class CategoryTreeJsonService {
+
+    // Генератор не закрывает поток ответа: его закрывает контейнер сервлетов
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryTreeCache treeCache;
+
+    // Последняя копия всего дерева
+    private volatile TreeJson fullTree;
+
+    /**
+     * Копия узлов дерева или поддерева для записи в JSON вместе с версией дерева, по которой она снята.
+     * Занимает порядка 16 байт на узел плюс названия, которые разделяются с деревом в памяти.
+     */
+    public static final class TreeJson {
+
+        private final long version;
+        private final boolean array;
+        private final long[] ids;
+        private final String[] names;
+        private final int[] levels;
+
+        private TreeJson(long version, boolean array, CategoryTree tree, int from, int to, int baseDepth) {
+            this.version = version;
+            this.array = array;
+            int count = to - from;
+            this.ids = new long[count];
+            this.names = new String[count];
+            this.levels = new int[count];
+            for (int i = 0; i < count; i++) {
+                int node = tree.nodeAt(from + i);
+                ids[i] = tree.id(node);
+                names[i] = tree.name(node);
+                levels[i] = tree.depth(node) - baseDepth;
+            }
+        }
+
+        /**
+         * Версия дерева, по которой снята копия.
+         *
+         * @return версия дерева
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * Записать узлы как вложенные объекты в поток в UTF-8: всё дерево — массивом корневых
+         * категорий, поддерево — объектом категории. Вложенность восстанавливается по глубине узлов,
+         * без рекурсии.
+         *
+         * @param output поток ответа
+         * @throws IOException если произошла ошибка записи
+         */
+        public void writeTo(OutputStream output) throws IOException {
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+                if (array) {
+                    generator.writeStartArray();
+                }
+                int open = 0; // Количество незакрытых объектов узлов
+                for (int i = 0; i < ids.length; i++) {
+                    for (; open > levels[i]; open--) {
+                        generator.writeEndArray();
+                        generator.writeEndObject();
+                    }
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", ids[i]);
+                    generator.writeStringField("name", names[i]);
+                    generator.writeArrayFieldStart("children");
+                    open++;
+                }
+                for (; open > 0; open--) {
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                if (array) {
+                    generator.writeEndArray();
+                }
+            }
+        }
+    }
+
+    /**
+     * Текущая версия дерева категорий.
+     *
+     * @return версия дерева
+     */
+    public long currentVersion() {
+        return treeCache.getVersion();
+    }
+
+    /**
+     * Снять копию всего дерева для записи массивом корневых категорий.
+     *
+     * @return копия дерева и его версия
+     */
+    public TreeJson renderTree() {
+        TreeJson cached = fullTree;
+        if (cached != null && cached.version() == treeCache.getVersion()) {
+            return cached;
+        }
+        // Версия читается под блокировкой дерева, поэтому соответствует копии
+        TreeJson rendered = categoryService.readTree(tree -> new TreeJson(treeCache.getVersion(), true, tree, 1, tree.positions(), 0));
+        fullTree = rendered;
+        return rendered;
+    }
+
+    /**
+     * Снять копию поддерева категории с заданным названием.
+     *
+     * @param name название категории
+     * @return копия поддерева и версия дерева
+     * @throws ResponseStatusException 404, если категория не найдена; 409, если название не уникально
+     */
+    public TreeJson renderSubtree(String name) {
+        return categoryService.readTree(tree -> {
+            int[] nodes = tree.findAllByName(name);
+            if (nodes.length == 0 || tree.subtreeStart(nodes[0]) == CategoryTree.NONE) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Категория '" + name + "' не найдена.");
+            }
+            if (nodes.length > 1) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Найдено несколько категорий с названием '" + name + "'.");
+            }
+            int node = nodes[0];
+            return new TreeJson(treeCache.getVersion(), false, tree, tree.subtreeStart(node), tree.subtreeEnd(node), tree.depth(node));
+        });
+    }
+}
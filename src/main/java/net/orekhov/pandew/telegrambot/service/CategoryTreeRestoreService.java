@@ -0,0 +1,118 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import jakarta.annotation.PreDestroy;
+import net.orekhov.pandew.telegrambot.journal.ChangeJournal;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Сервис быстрого восстановления дерева категорий после перезапуска.
+ * При запуске дерево восстанавливается из снимка и журнала изменений ({@link ChangeJournal})
+ * до регистрации бота, затем в фоне загружается из базы данных и сравнивается с восстановленным.
+ * Снимок дерева периодически перезаписывается, если в журнале появились новые записи.
+ * При однократном запуске для миграции схемы (профиль migrate) сервис не создается.
+ */
+@Service
+@Profile("!migrate")
+public class CategoryTreeRestoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryTreeRestoreService.class);
+
+    // Количество попыток проверки, если дерево изменяется во время загрузки из базы данных
+    private static final int VERIFY_ATTEMPTS = 3;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryTreeCache treeCache;
+
+    @Autowired
+    private ChangeJournal changeJournal;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Восстановить дерево из снимка и журнала и запустить фоновую проверку по базе данных.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void restore() {
+        long version = treeCache.getVersion();
+        long start = System.nanoTime();
+        CategoryTree restored = changeJournal.restore();
+        if (restored != null && treeCache.replace(version, cached -> cached != null ? cached : restored)) {
+            logger.info("Дерево категорий восстановлено из снимка и журнала за {} мс: {} категорий.",
+                    (System.nanoTime() - start) / 1_000_000, restored.size());
+        }
+        taskExecutor.execute(this::verify);
+    }
+
+    /**
+     * Загрузить дерево из базы данных и заменить им дерево в памяти, если они различаются.
+     * Если дерево было пустым, загруженное дерево сразу устанавливается в кэш.
+     */
+    void verify() {
+        try {
+            for (int attempt = 0; attempt < VERIFY_ATTEMPTS; attempt++) {
+                long version = treeCache.getVersion();
+                CategoryTree loaded = categoryService.loadTree();
+                boolean[] differs = new boolean[1];
+                boolean replaced = treeCache.replace(version, cached -> {
+                    if (cached != null && cached.contentEquals(loaded)) {
+                        return cached;
+                    }
+                    differs[0] = cached != null;
+                    return loaded;
+                });
+                if (replaced) {
+                    if (differs[0]) {
+                        logger.warn("Дерево, восстановленное из снимка и журнала, не совпадает с базой данных и заменено.");
+                    }
+                    return;
+                }
+            }
+            // Дерево постоянно изменяется: сбрасываем его, чтобы следующее чтение загрузило его из базы данных
+            treeCache.invalidate();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка проверки дерева категорий по базе данных", e);
+            treeCache.invalidate();
+        }
+    }
+
+    /**
+     * Записать снимок дерева, если в журнале есть записи, не учтенные в предыдущем снимке.
+     */
+    @Scheduled(fixedDelayString = "${category.snapshot.interval:PT10M}", initialDelayString = "${category.snapshot.interval:PT10M}")
+    public void snapshot() {
+        if (changeJournal.hasChanges()) {
+            // Снимок пишется при чтении дерева, чтобы изменения дерева не попали между ним и очисткой журнала
+            categoryService.readTree(tree -> {
+                changeJournal.snapshot(tree);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Записать снимок дерева при остановке приложения, чтобы следующий запуск не применял журнал.
+     */
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось записать снимок дерева при остановке", e);
+        }
+    }
+}
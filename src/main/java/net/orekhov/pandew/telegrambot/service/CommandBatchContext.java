@@ -0,0 +1,86 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import net.orekhov.pandew.telegrambot.model.Category;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Общие данные для пачки команд, полученной от Телеграма за один вызов getUpdates.
+ * Хранит категории, найденные заранее одним запросом, и общий снимок дерева категорий,
+ * чтобы не повторять одни и те же чтения из базы данных для каждой команды пачки.
+ *
+ * Команды пачки выполняются по порядку, поэтому после изменяющих команд
+ * устаревшие данные сбрасываются и читаются заново.
+ */
+public class CommandBatchContext {
+
+    // Категории, найденные заранее по названиям
+    private final Map<String, Category> resolvedCategories;
+
+    // Снимок дерева категорий, общий для всех команд /viewTree пачки
+    private String treeSnapshot;
+
+    /**
+     * Создает контекст пачки с заранее найденными категориями.
+     *
+     * @param resolvedCategories отображение названия на найденную категорию
+     */
+    public CommandBatchContext(Map<String, Category> resolvedCategories) {
+        this.resolvedCategories = new HashMap<>(resolvedCategories);
+    }
+
+    /**
+     * Создает пустой контекст для одиночной команды.
+     *
+     * @return контекст без заранее найденных данных
+     */
+    public static CommandBatchContext single() {
+        return new CommandBatchContext(Map.of());
+    }
+
+    /**
+     * Ищет категорию среди найденных заранее, а при отсутствии — с помощью переданного поиска.
+     *
+     * @param name     название категории
+     * @param fallback поиск категории в базе данных
+     * @return категория, если найдена
+     */
+    public Optional<Category> findCategory(String name, Supplier<Optional<Category>> fallback) {
+        Category category = resolvedCategories.get(name);
+        return category != null ? Optional.of(category) : fallback.get();
+    }
+
+    /**
+     * Возвращает общий снимок дерева категорий, строя его при первом обращении.
+     *
+     * @param renderer построение строкового представления дерева
+     * @return строковое представление дерева категорий
+     */
+    public String getTreeSnapshot(Supplier<String> renderer) {
+        if (treeSnapshot == null) {
+            treeSnapshot = renderer.get();
+        }
+        return treeSnapshot;
+    }
+
+    /**
+     * Отмечает добавление категории: снимок дерева устарел,
+     * а название могло перестать быть уникальным.
+     *
+     * @param name название добавленной категории
+     */
+    public void categoryAdded(String name) {
+        resolvedCategories.remove(name);
+        treeSnapshot = null;
+    }
+
+    /**
+     * Сбрасывает все заранее найденные данные после удаления или импорта категорий.
+     */
+    public void invalidate() {
+        resolvedCategories.clear();
+        treeSnapshot = null;
+    }
+}
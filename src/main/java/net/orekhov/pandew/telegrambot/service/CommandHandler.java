@@ -1,189 +1,138 @@
 package net.orekhov.pandew.telegrambot.service;
 
-import net.orekhov.pandew.telegrambot.bot.MyTelegramBot;
-import net.orekhov.pandew.telegrambot.model.Category;
+import net.orekhov.pandew.telegrambot.command.Command;
+import net.orekhov.pandew.telegrambot.command.CommandRouter;
+import net.orekhov.pandew.telegrambot.command.CommandTokens;
+import net.orekhov.pandew.telegrambot.command.UploadCommand;
+import net.orekhov.pandew.telegrambot.jfr.CommandDispatchEvent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
-import org.telegram.telegrambots.meta.api.objects.InputFile;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.util.Optional;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Класс обработчика команд для Telegram-бота.
- * Обрабатывает команды пользователей, взаимодействует с сервисами категорий и файлов,
- * а также отправляет ответы в чат.
+ * Разбирает текст сообщения и передает его команде, найденной в {@link CommandRouter}.
+ * Сами команды — отдельные компоненты пакета command.
  */
 @Component
 public class CommandHandler {
 
+    private static final String EMPTY_COMMAND =
+            "Команда не может быть пустой. Используйте /help для получения списка доступных команд.";
+    private static final String UNKNOWN_COMMAND =
+            "Неизвестная команда. Используйте /help для получения списка команд.";
+
+    private final CommandRouter commandRouter;
     private final CategoryService categoryService;
-    private final FileService fileService;
-    private final MyTelegramBot myTelegramBot;
+    private final UploadCommand uploadCommand;
 
     /**
      * Конструктор, инициализирующий сервисы.
      *
+     * @param commandRouter Таблица команд бота.
      * @param categoryService Сервис для работы с категориями.
-     * @param fileService Сервис для работы с файлами.
-     * @param myTelegramBot Инстанс Telegram-бота.
+     * @param uploadCommand Команда загрузки файла (хранит категорию для прививки файла).
      */
     @Autowired
-    public CommandHandler(CategoryService categoryService, FileService fileService, MyTelegramBot myTelegramBot) {
+    public CommandHandler(CommandRouter commandRouter, CategoryService categoryService, UploadCommand uploadCommand) {
+        this.commandRouter = commandRouter;
         this.categoryService = categoryService;
-        this.fileService = fileService;
-        this.myTelegramBot = myTelegramBot;
+        this.uploadCommand = uploadCommand;
+    }
+
+    /**
+     * Подготавливает общие данные для пачки команд.
+     * Собирает названия категорий, на которые ссылаются команды пачки,
+     * и находит их все одним запросом.
+     *
+     * @param commandTexts Тексты команд пачки.
+     * @return Контекст пачки команд.
+     */
+    public CommandBatchContext prepareBatch(List<String> commandTexts) {
+        Set<String> referencedNames = new HashSet<>();
+        for (String commandText : commandTexts) {
+            CommandTokens tokens = CommandTokens.parse(commandText);
+            Command command = commandRouter.find(tokens);
+            if (command != null) {
+                command.collectReferencedNames(tokens, referencedNames);
+            }
+        }
+        return new CommandBatchContext(categoryService.getCategoriesByNames(referencedNames));
     }
 
     /**
      * Обрабатывает команду, введённую пользователем.
-     * Разбирает команду и выполняет соответствующее действие.
      *
      * @param commandText Текст команды.
      * @param chatId Идентификатор чата для отправки сообщений.
      * @return Ответ на команду.
      */
     public String handleCommand(String commandText, String chatId) {
-        if (commandText == null || commandText.trim().isEmpty()) {
-            return "Команда не может быть пустой. Используйте /help для получения списка доступных команд.";
-        }
-
-        String[] commandParts = commandText.trim().split(" ", 2);
-        String command = commandParts[0];
-
-        switch (command) {
-            case "/start":
-            case "/help":
-                return showHelp();  // Показывает список доступных команд.
-
-            case "/viewTree":
-                return categoryService.viewTree();  // Показывает дерево категорий.
-
-            case "/addElement":
-                return commandParts.length > 1 ? addElement(commandParts[1]) :
-                        "Неверный формат команды. Используйте:\n" +
-                                "/addElement <название категории>\n" +
-                                "/addElement <родительская категория> <дочерняя категория>";
-
-            case "/removeElement":
-                return commandParts.length > 1 ? removeElement(commandParts[1]) :
-                        "Неверный формат команды. Используйте /removeElement <название категории>.";
-
-            case "/download":
-                return handleDownload(chatId);  // Генерация и отправка Excel файла.
-
-            case "/upload":
-                return "Пожалуйста, отправьте файл Excel для загрузки дерева категорий.";
-
-            default:
-                return "Неизвестная команда. Используйте /help для получения списка команд.";
-        }
+        return handleCommand(commandText, chatId, CommandBatchContext.single());
     }
 
     /**
-     * Генерирует и отправляет файл Excel с деревом категорий.
+     * Обрабатывает команду из пачки, используя общие данные пачки.
      *
-     * @param chatId Идентификатор чата для отправки файла.
-     * @return Сообщение об успешной отправке или ошибке.
+     * @param commandText Текст команды.
+     * @param chatId Идентификатор чата для отправки сообщений.
+     * @param context Контекст пачки команд.
+     * @return Ответ на команду.
      */
-    private String handleDownload(String chatId) {
+    public String handleCommand(String commandText, String chatId, CommandBatchContext context) {
+        CommandDispatchEvent event = new CommandDispatchEvent();
+        event.begin();
+        CommandTokens tokens = CommandTokens.parse(commandText);
+        String response = null;
         try {
-            // Генерация Excel файла с помощью FileService.
-            ByteArrayInputStream excelFile = fileService.exportCategoriesToExcel();
-
-            // Подготовка файла для отправки через Telegram.
-            InputStream fileInputStream = excelFile;
-            String fileName = "categories.xlsx";
-            SendDocument sendDocument = new SendDocument();
-            sendDocument.setChatId(chatId);
-            sendDocument.setDocument(new InputFile(fileInputStream, fileName));
-
-            // Отправка файла через бот.
-            myTelegramBot.execute(sendDocument);
-
-            return "Файл успешно сгенерирован и отправлен.";
-        } catch (Exception e) {
-            return "Произошла ошибка при создании или отправке файла. Попробуйте снова.";
+            response = dispatchCommand(tokens, chatId, context);
+            return response;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.chatId = chatId;
+                event.command = tokens.isEmpty() ? null : tokens.token(0);
+                event.responseLength = response == null ? 0 : response.length();
+                event.commit();
+            }
         }
     }
 
     /**
-     * Добавление новой категории.
+     * Находит команду по первому слову и выполняет её.
      *
-     * @param commandText Текст команды с названием категории.
-     * @return Сообщение о результате добавления категории.
+     * @param tokens Слова команды.
+     * @param chatId Идентификатор чата для отправки сообщений.
+     * @param context Контекст пачки команд.
+     * @return Ответ на команду.
      */
-    private String addElement(String commandText) {
-        // Удаляем лишние пробелы в начале и конце строки.
-        String cleanedCommand = commandText.trim().replaceAll("\\s+", " ");
-        String[] elements = cleanedCommand.split(" ", 2);
-
-        if (elements.length == 1) {
-            // Создание корневой категории.
-            String parentCategoryName = elements[0];
-            try {
-                categoryService.addCategory(parentCategoryName, null);
-                return "Корневая категория '" + parentCategoryName + "' успешно добавлена.";
-            } catch (Exception e) {
-                return "Произошла ошибка при добавлении корневой категории. Попробуйте снова.";
-            }
-        } else if (elements.length == 2) {
-            // Добавление дочерней категории.
-            String parentCategoryName = elements[0];
-            String childCategoryName = elements[1];
-            try {
-                Optional<Category> parentCategory = categoryService.getCategoryByName(parentCategoryName);
-                if (parentCategory.isEmpty()) {
-                    return "Родительская категория '" + parentCategoryName + "' не найдена.";
-                }
-                categoryService.addCategory(childCategoryName, parentCategory.get());
-                return "Дочерняя категория '" + childCategoryName + "' успешно добавлена к родительской категории '" + parentCategoryName + "'.";
-            } catch (Exception e) {
-                return "Произошла ошибка при добавлении дочерней категории. Попробуйте снова.";
-            }
-        } else {
-            // Неверный формат команды.
-            return "Неверный формат команды. Используйте:\n" +
-                    "/addElement <название категории>\n" +
-                    "/addElement <родительская категория> <дочерняя категория>";
+    private String dispatchCommand(CommandTokens tokens, String chatId, CommandBatchContext context) {
+        if (tokens.isEmpty()) {
+            return EMPTY_COMMAND;
         }
+        Command command = commandRouter.find(tokens);
+        return command != null ? command.execute(tokens, chatId, context) : UNKNOWN_COMMAND;
     }
 
     /**
-     * Обрабатывает команду удаления категории.
+     * Возвращает категорию, под которую нужно привить загруженный в чат файл.
      *
-     * @param commandText Текст команды для удаления категории.
-     * @return Сообщение о результате удаления категории или ошибка в случае неверного формата.
+     * @param chatId Идентификатор чата.
+     * @return Идентификатор категории или null, если файл загружается во всё дерево.
      */
-    private String removeElement(String commandText) {
-        commandText = commandText.trim();
-
-        // Проверяем, что после первого слова нет других символов, кроме пробелов.
-        if (commandText.matches("^[^\\s]+(\\s*)$")) {
-            // Если формат команды верный, удаляем указанную категорию.
-            categoryService.deleteCategory(commandText);
-            return "Категория " + commandText + " удалена!";
-        } else {
-            // Если команда не соответствует ожидаемому формату, возвращаем сообщение об ошибке.
-            return "Неверный формат команды. Используйте /removeElement <название категории>";
-        }
+    public Long getUploadTarget(String chatId) {
+        return uploadCommand.getUploadTarget(chatId);
     }
 
     /**
-     * Показывает список доступных команд.
+     * Сбрасывает категорию прививки после успешной загрузки файла.
      *
-     * @return Список команд.
+     * @param chatId Идентификатор чата.
+     * @param target Категория, под которую был привит файл, или null.
      */
-    private String showHelp() {
-        return "Доступные команды:\n" +
-                "/start - Начало работы с ботом. Выводит список команд.\n" +
-                "/help - Список доступных команд.\n" +
-                "/viewTree - Отображает дерево категорий.\n" +
-                "/addElement <название категории> - Добавить корневую категорию.\n" +
-                "/addElement <родительская категория> <дочерняя категория> - Добавить дочернюю категорию.\n" +
-                "/removeElement <название категории> - Удалить категорию и её дочерние элементы.\n" +
-                "/download - Скачать дерево категорий в формате Excel.\n" +
-                "/upload - Загрузить дерево категорий из Excel файла.";
+    public void clearUploadTarget(String chatId, Long target) {
+        uploadCommand.clearUploadTarget(chatId, target);
     }
 }
@@ -1,13 +1,18 @@
 package net.orekhov.pandew.telegrambot.service;
 
-import net.orekhov.pandew.telegrambot.model.Category;
+import net.orekhov.pandew.telegrambot.dto.CategoryRow;
+import net.orekhov.pandew.telegrambot.jfr.FileWriteEvent;
 import net.orekhov.pandew.telegrambot.repository.CategoryRepository;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.io.*;
-import java.util.List;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 /**
  * Сервис для экспорта категорий в формат Excel.
@@ -16,6 +21,12 @@ import java.util.List;
 @Service
 public class ExcelExportService {
 
+    // Количество строк листа, которые SXSSFWorkbook держит в памяти при потоковой записи
+    private static final int STREAMING_WINDOW_SIZE = 100;
+
+    @Autowired
+    private CategoryService categoryService;
+
     @Autowired
     private CategoryRepository categoryRepository;
 
@@ -28,8 +39,46 @@ public class ExcelExportService {
      * @throws IOException если произошла ошибка при создании или записи в Excel файл.
      */
     public ByteArrayInputStream exportCategoriesToExcel() throws IOException {
-        // Получаем список всех категорий из базы данных
-        List<Category> categories = categoryRepository.findAll();
+        // Под блокировкой дерева только копируем пары (имя, родитель): построение и сжатие книги
+        // выполняются после её снятия, чтобы не задерживать изменения дерева и ждущие их чтения
+        String[][] rows = categoryService.readTree(ExcelExportService::copyRows);
+        return writeWorkbook(rows[0], rows[1]);
+    }
+
+    /**
+     * Копирует названия категорий и их родителей в порядке обхода дерева в глубину,
+     * поэтому родитель всегда оказывается раньше своих дочерних категорий.
+     *
+     * @param tree дерево категорий.
+     * @return массив из двух массивов: названия категорий и названия родителей
+     *         (пустая строка для корневой категории).
+     */
+    private static String[][] copyRows(CategoryTree tree) {
+        int count = tree.positions() - 1;
+        String[] names = new String[count];
+        String[] parentNames = new String[count];
+        for (int pos = 1; pos < tree.positions(); pos++) {
+            int node = tree.nodeAt(pos);
+            int parent = tree.parent(node);
+            names[pos - 1] = tree.name(node);
+            parentNames[pos - 1] = parent != CategoryTree.ROOT ? tree.name(parent) : "";
+        }
+        return new String[][] {names, parentNames};
+    }
+
+    /**
+     * Записывает категории в Excel-файл.
+     *
+     * @param names названия категорий.
+     * @param parentNames названия родительских категорий (пустая строка, если родителя нет).
+     * @return ByteArrayInputStream поток данных Excel-файла.
+     * @throws IOException если произошла ошибка при создании или записи в Excel файл.
+     */
+    private ByteArrayInputStream writeWorkbook(String[] names, String[] parentNames) throws IOException {
+        // Событие JFR с длительностью построения файла, количеством строк и размером файла
+        FileWriteEvent event = new FileWriteEvent();
+        event.begin();
+        long bytes = 0;
 
         // Создаем новый Excel-файл
         try (Workbook workbook = new XSSFWorkbook()) {
@@ -41,18 +90,77 @@ public class ExcelExportService {
             headerRow.createCell(1).setCellValue("Parent Name"); // Название родительской категории
 
             // Заполняем файл данными о категориях
-            int rowIdx = 1;
-            for (Category category : categories) {
-                Row row = sheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(category.getName()); // Имя категории
-                // Имя родительской категории или пустая строка, если родителя нет
-                row.createCell(1).setCellValue(category.getParent() != null ? category.getParent().getName() : "");
+            for (int i = 0; i < names.length; i++) {
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(names[i]); // Имя категории
+                row.createCell(1).setCellValue(parentNames[i]); // Имя родительской категории
             }
 
             // Записываем данные в ByteArrayOutputStream
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             workbook.write(out); // Запись Excel-файла в поток
+            bytes = out.size();
             return new ByteArrayInputStream(out.toByteArray()); // Возвращаем поток данных
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.format = ExportFormat.XLSX.getExtension();
+                event.rowCount = names.length;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Экспортирует поддерево категории в формат Excel.
+     * Строки поддерева читаются одним рекурсивным запросом и сразу записываются
+     * в потоковую книгу SXSSFWorkbook, поэтому затраты зависят только от размера ветки.
+     * Корень поддерева записывается без родителя.
+     *
+     * @param rootId идентификатор корня поддерева.
+     * @return ByteArrayInputStream поток данных Excel-файла.
+     * @throws IOException если произошла ошибка при создании или записи в Excel файл.
+     */
+    @Transactional(readOnly = true)
+    public ByteArrayInputStream exportSubtreeToExcel(Long rootId) throws IOException {
+        FileWriteEvent event = new FileWriteEvent();
+        event.begin();
+        int rowIdx = 1;
+        long bytes = 0;
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(STREAMING_WINDOW_SIZE);
+        try (Stream<CategoryRow> rows = categoryRepository.streamSubtreeRows(rootId)) {
+            Sheet sheet = workbook.createSheet("Categories");
+
+            // Создаем строку заголовков
+            Row headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("Name"); // Название категории
+            headerRow.createCell(1).setCellValue("Parent Name"); // Название родительской категории
+
+            // Заполняем файл строками поддерева по мере чтения из базы данных
+            Iterator<CategoryRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                CategoryRow category = iterator.next();
+                Row row = sheet.createRow(rowIdx++);
+                row.createCell(0).setCellValue(category.getName());
+                row.createCell(1).setCellValue(category.getParentName() != null ? category.getParentName() : "");
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out); // Запись Excel-файла в поток
+            bytes = out.size();
+            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            workbook.dispose(); // Удаляем временные файлы потоковой книги
+            workbook.close();
+            event.end();
+            if (event.shouldCommit()) {
+                event.format = ExportFormat.XLSX.getExtension();
+                event.rowCount = rowIdx - 1;
+                event.bytes = bytes;
+                event.commit();
+            }
         }
     }
 }
@@ -1,14 +1,12 @@
 package net.orekhov.pandew.telegrambot.service;
 
-import net.orekhov.pandew.telegrambot.model.Category;
-import net.orekhov.pandew.telegrambot.repository.CategoryRepository;
+import net.orekhov.pandew.telegrambot.jfr.CountingInputStream;
+import net.orekhov.pandew.telegrambot.jfr.FileParseEvent;
+import net.orekhov.pandew.telegrambot.upload.UploadRows;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Сервис для импорта категорий из Excel.
@@ -17,61 +15,53 @@ import java.util.List;
 @Service
 public class ExcelImportService {
 
-    @Autowired
-    private CategoryRepository categoryRepository;
-
     /**
-     * Импортирует категории из Excel-файла.
-     * Читает данные из Excel, создает объекты Category и сохраняет их в базе данных.
+     * Читает строки Excel-файла в буфер для проверки перед сохранением.
      * Предполагается, что файл Excel содержит два столбца: имя категории и имя родительской категории.
+     * Пустые строки пропускаются, пустые ячейки читаются как пустые значения,
+     * а числа и даты — так, как они отображаются в Excel.
      *
      * @param inputStream входной поток данных Excel-файла.
+     * @return строки файла.
      * @throws IOException если произошла ошибка при чтении Excel файла.
      */
-    public void importCategoriesFromExcel(InputStream inputStream) throws IOException {
+    public UploadRows readRows(InputStream inputStream) throws IOException {
+        // Событие JFR с длительностью разбора, количеством строк и размером файла
+        FileParseEvent event = new FileParseEvent();
+        event.begin();
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        UploadRows rows = new UploadRows();
+        DataFormatter formatter = new DataFormatter();
+
         // Открываем Excel-файл из входного потока
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
+        try (Workbook workbook = new XSSFWorkbook(countingStream)) {
             // Получаем первый лист из книги
             Sheet sheet = workbook.getSheetAt(0);
-            List<Category> categories = new ArrayList<>();
 
             // Проходим по всем строкам листа (начиная с 1, так как 0 — это заголовки)
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
-
-                // Извлекаем имя категории и имя родительской категории
-                String name = row.getCell(0).getStringCellValue();
-                String parentName = row.getCell(1).getStringCellValue();
-
-                // Находим родительскую категорию в базе данных (если она указана)
-                Category parent = null;
-                if (!parentName.isEmpty()) {
-                    parent = categoryRepository.findByName(parentName)
-                            .orElseGet(() -> {
-                                // Если родительская категория не найдена, создаем новую
-                                Category newParent = new Category(parentName, null);
-                                categoryRepository.save(newParent);
-                                return newParent;
-                            });
+                if (row == null) {
+                    continue;
                 }
 
-                final Category finalParent = parent; // Делаем переменную final (или effectively final)
-
-                // Ищем или создаем новую категорию
-                Category category = categoryRepository.findByName(name)
-                        .orElseGet(() -> {
-                            Category newCategory = new Category(name, finalParent);
-                            categoryRepository.save(newCategory);
-                            return newCategory;
-                        });
-
-                // Добавляем категорию в список
-                categories.add(category);
+                // Извлекаем имя категории и имя родительской категории (для отсутствующей ячейки — пустая строка)
+                String name = formatter.formatCellValue(row.getCell(0)).trim();
+                String parentName = formatter.formatCellValue(row.getCell(1)).trim();
+                if (name.isEmpty() && parentName.isEmpty()) {
+                    continue;
+                }
+                rows.add(name, parentName, i + 1);
+            }
+            return rows;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.format = ExportFormat.XLSX.getExtension();
+                event.rowCount = rows.size();
+                event.bytes = countingStream.getCount();
+                event.commit();
             }
-
-            // Сохраняем все категории в базе данных
-            categoryRepository.saveAll(categories);
         }
     }
 }
-
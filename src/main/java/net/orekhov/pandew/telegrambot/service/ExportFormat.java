@@ -0,0 +1,90 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Форматы файлов с деревом категорий, которые бот умеет выгружать и загружать.
+ * Компактные форматы CSV и JSON содержат только пары (имя, родитель) и могут быть сжаты gzip.
+ */
+public enum ExportFormat {
+
+    XLSX("xlsx", false),
+    CSV("csv", false),
+    CSV_GZ("csv.gz", true),
+    JSON("json", false),
+    JSON_GZ("json.gz", true);
+
+    // Расширение файла, оно же аргумент команды /download
+    private final String extension;
+
+    // Сжимается ли файл gzip
+    private final boolean gzip;
+
+    ExportFormat(String extension, boolean gzip) {
+        this.extension = extension;
+        this.gzip = gzip;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * Проверяет, является ли формат текстовым форматом CSV (со сжатием или без).
+     *
+     * @return true для CSV и CSV_GZ
+     */
+    public boolean isCsv() {
+        return this == CSV || this == CSV_GZ;
+    }
+
+    /**
+     * Возвращает имя файла выгрузки в этом формате.
+     *
+     * @return имя файла с расширением формата
+     */
+    public String getFileName() {
+        return "categories." + extension;
+    }
+
+    /**
+     * Определяет формат по аргументу команды /download, например "csv" или "json.gz".
+     *
+     * @param argument аргумент команды
+     * @return формат, если аргумент распознан
+     */
+    public static Optional<ExportFormat> fromArgument(String argument) {
+        String normalized = argument.trim().toLowerCase(Locale.ROOT);
+        for (ExportFormat format : values()) {
+            if (format.extension.equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Определяет формат по имени загруженного файла.
+     * Сжатые форматы проверяются первыми, чтобы "categories.csv.gz" не распознавался как CSV.
+     *
+     * @param fileName имя файла
+     * @return формат, если расширение файла распознано
+     */
+    public static Optional<ExportFormat> fromFileName(String fileName) {
+        if (fileName == null) {
+            return Optional.empty();
+        }
+        String normalized = fileName.toLowerCase(Locale.ROOT);
+        for (ExportFormat format : new ExportFormat[]{CSV_GZ, JSON_GZ, XLSX, CSV, JSON}) {
+            if (normalized.endsWith("." + format.extension)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+}
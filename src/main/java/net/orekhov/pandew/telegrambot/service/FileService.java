@@ -1,15 +1,21 @@
 package net.orekhov.pandew.telegrambot.service;
+import net.orekhov.pandew.telegrambot.upload.UploadRows;
+import net.orekhov.pandew.telegrambot.upload.UploadValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
 
 
 /**
  * Сервис для работы с файлами.
- * Этот сервис предназначен для экспорта и импорта категорий в формате Excel.
+ * Этот сервис предназначен для экспорта и импорта категорий в форматах Excel, CSV и JSON.
  */
 @Component
 public class FileService {
@@ -23,6 +29,21 @@ public class FileService {
     @Autowired
     private ExcelImportService excelImportService; // Сервис для импорта данных из Excel
 
+    @Autowired
+    private CategoryService categoryService; // Сервис для работы с категориями
+
+    @Autowired
+    private StreamingExportService streamingExportService; // Сервис для потоковой выгрузки в CSV и JSON
+
+    @Autowired
+    private StreamingImportService streamingImportService; // Сервис для потоковой загрузки из CSV и JSON
+
+    @Autowired
+    private UploadValidator uploadValidator; // Проверка загружаемого файла до сохранения
+
+    @Autowired
+    private TransactionTemplate transactionTemplate; // Общая транзакция сохранения строк файла
+
     /**
      * Экспортирует категории в формат Excel.
      * Делегирует выполнение задачи сервису ExcelExportService.
@@ -37,14 +58,99 @@ public class FileService {
 
     /**
      * Импортирует категории из Excel.
-     * Делегирует выполнение задачи сервису ExcelImportService.
+     * Файл проверяется перед сохранением так же, как файлы других форматов.
      *
      * @param fileStream входной поток данных Excel-файла.
      * @throws IOException если произошла ошибка при чтении Excel файла.
      */
     public void importCategoriesFromExcel(ByteArrayInputStream fileStream) throws IOException {
-        // Используем метод excelImportService для импорта категорий из переданного Excel файла
-        excelImportService.importCategoriesFromExcel(fileStream);
+        importCategories(fileStream, ExportFormat.XLSX);
     }
-}
 
+    /**
+     * Экспортирует категории в заданном формате.
+     * Excel-файл строится целиком, а CSV и JSON выгружаются потоково.
+     *
+     * @param format формат выгрузки.
+     * @return поток данных файла; его нужно закрыть после чтения.
+     * @throws IOException если произошла ошибка при создании файла.
+     */
+    public InputStream exportCategories(ExportFormat format) throws IOException {
+        return exportCategories(format, null);
+    }
+
+    /**
+     * Экспортирует поддерево категории (или всё дерево) в заданном формате.
+     *
+     * @param format формат выгрузки.
+     * @param rootId идентификатор корня поддерева или null для выгрузки всего дерева.
+     * @return поток данных файла; его нужно закрыть после чтения.
+     * @throws IOException если произошла ошибка при создании файла.
+     */
+    public InputStream exportCategories(ExportFormat format, Long rootId) throws IOException {
+        if (format == ExportFormat.XLSX) {
+            return rootId == null ? excelExportService.exportCategoriesToExcel()
+                    : excelExportService.exportSubtreeToExcel(rootId);
+        }
+        logger.info("Потоковая выгрузка категорий в формате {}.", format.getExtension());
+        return streamingExportService.exportCategories(format, rootId);
+    }
+
+    /**
+     * Импортирует категории из файла в заданном формате.
+     *
+     * @param fileStream входной поток данных файла.
+     * @param format формат файла.
+     * @throws IOException если произошла ошибка при чтении файла.
+     */
+    public void importCategories(InputStream fileStream, ExportFormat format) throws IOException {
+        importCategories(fileStream, format, null);
+    }
+
+    /**
+     * Импортирует категории из файла в заданном формате, прививая их под выбранную категорию.
+     * Файл сначала целиком читается и проверяется ({@link UploadValidator}): при ошибках
+     * в базе данных ничего не меняется. Затем строки сохраняются в одной транзакции так, чтобы родитель
+     * из файла сохранялся раньше своих потомков: файл загружается целиком или не загружается совсем.
+     * Дерево в памяти сбрасывается, а добавления записываются в журнал после фиксации транзакции,
+     * как при удалении категории.
+     *
+     * @param fileStream входной поток данных файла.
+     * @param format формат файла.
+     * @param graftParentId идентификатор категории, под которую прививается файл,
+     *                      или null для объединения со всем деревом.
+     * @throws IOException если произошла ошибка при чтении файла.
+     * @throws net.orekhov.pandew.telegrambot.upload.UploadValidationException если файл не прошел проверку.
+     */
+    public void importCategories(InputStream fileStream, ExportFormat format, Long graftParentId) throws IOException {
+        UploadRows rows = format == ExportFormat.XLSX ? excelImportService.readRows(fileStream)
+                : streamingImportService.readRows(fileStream, format);
+        int[] order = uploadValidator.validate(rows, graftParentId != null);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            CategoryMerger merger = graftParentId == null ? categoryService.treeMerger(fileNames(rows))
+                    : categoryService.graftMerger(graftParentId);
+            for (int row : order) {
+                merger.merge(rows.name(row), rows.parentName(row));
+            }
+        });
+        logger.info("Загружено {} строк из файла формата {}.", rows.size(), format.getExtension());
+    }
+
+    /**
+     * Собирает названия категорий и родителей из строк файла.
+     *
+     * @param rows строки файла.
+     * @return названия без повторов и пустых значений.
+     */
+    private Set<String> fileNames(UploadRows rows) {
+        Set<String> names = new HashSet<>();
+        for (int row = 0; row < rows.size(); row++) {
+            names.add(rows.name(row));
+            if (!rows.parentName(row).isEmpty()) {
+                names.add(rows.parentName(row));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,279 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import net.orekhov.pandew.telegrambot.dto.CategoryRow;
+import net.orekhov.pandew.telegrambot.jfr.CountingOutputStream;
+import net.orekhov.pandew.telegrambot.jfr.FileWriteEvent;
+import net.orekhov.pandew.telegrambot.repository.CategoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Сервис потоковой выгрузки категорий в компактных форматах CSV и JSON.
+ * Строки читаются курсором базы данных и сразу записываются в канал (pipe),
+ * из которого Телеграм-клиент читает содержимое отправляемого документа.
+ * Файл целиком в памяти не собирается, сущности Category не создаются.
+ */
+@Service
+public class StreamingExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingExportService.class);
+
+    // Размер буфера канала между потоком выгрузки и потоком отправки
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TaskExecutor taskExecutor;
+
+    /**
+     * Конструктор, инициализирующий зависимости сервиса.
+     *
+     * @param categoryRepository Репозиторий для работы с категориями.
+     * @param transactionManager Менеджер транзакций для чтения курсором.
+     * @param taskExecutor Пул потоков, в котором выполняется запись выгрузки.
+     */
+    @Autowired
+    public StreamingExportService(CategoryRepository categoryRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.categoryRepository = categoryRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Запускает потоковую выгрузку всех категорий в формате CSV или JSON.
+     * Возвращенный поток нужно закрыть после чтения: это прерывает выгрузку,
+     * если отправка файла завершилась раньше времени.
+     *
+     * @param format Формат выгрузки (CSV или JSON, со сжатием или без).
+     * @return Поток с содержимым файла выгрузки.
+     * @throws IOException если не удалось создать канал для выгрузки.
+     */
+    public InputStream exportCategories(ExportFormat format) throws IOException {
+        return exportCategories(format, null);
+    }
+
+    /**
+     * Запускает потоковую выгрузку поддерева категории в формате CSV или JSON.
+     * Строки поддерева читаются одним рекурсивным запросом; корень поддерева выгружается без родителя.
+     *
+     * @param format Формат выгрузки (CSV или JSON, со сжатием или без).
+     * @param rootId Идентификатор корня поддерева или null для выгрузки всего дерева.
+     * @return Поток с содержимым файла выгрузки.
+     * @throws IOException если не удалось создать канал для выгрузки.
+     */
+    public InputStream exportCategories(ExportFormat format, Long rootId) throws IOException {
+        if (format == ExportFormat.XLSX) {
+            throw new IllegalArgumentException("Формат XLSX выгружается сервисом ExcelExportService.");
+        }
+
+        PipedInputStream input = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream output = new PipedOutputStream(input);
+        ExportInputStream exportInput = new ExportInputStream(input);
+
+        taskExecutor.execute(() -> {
+            // Событие JFR с длительностью выгрузки, количеством строк и объемом отправленных данных
+            FileWriteEvent event = new FileWriteEvent();
+            event.begin();
+            CountingOutputStream countingOutput = new CountingOutputStream(output);
+            int[] rowCount = new int[1];
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<CategoryRow> rows = rootId == null ? categoryRepository.streamAllRows()
+                            : categoryRepository.streamSubtreeRows(rootId)) {
+                        rowCount[0] = writeRows(rows.iterator(), format, countingOutput);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Ошибка передается читающей стороне до закрытия канала: вместо конца файла она получит IOException
+                logger.error("Ошибка потоковой выгрузки категорий в формате {}", format.getExtension(), e);
+                exportInput.fail(e);
+            } finally {
+                closeQuietly(output);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.format = format.getExtension();
+                    event.rowCount = rowCount[0];
+                    event.bytes = countingOutput.getCount();
+                    event.commit();
+                }
+            }
+        });
+        return exportInput;
+    }
+
+    /**
+     * Закрывает канал выгрузки. Без закрытия читающая сторона ждала бы данных бесконечно:
+     * поток пула, в котором шла запись, остается жив после ошибки.
+     *
+     * @param output Записывающая сторона канала.
+     */
+    private void closeQuietly(OutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            logger.warn("Не удалось закрыть канал выгрузки", e);
+        }
+    }
+
+    /**
+     * Записывает строки выгрузки в поток и закрывает его.
+     *
+     * @param rows Строки выгрузки.
+     * @param format Формат выгрузки.
+     * @param output Поток для записи.
+     * @return Количество записанных строк.
+     * @throws IOException если произошла ошибка записи.
+     */
+    private int writeRows(Iterator<CategoryRow> rows, ExportFormat format, OutputStream output) throws IOException {
+        OutputStream encoded = format.isGzip() ? new GZIPOutputStream(output, 8192) : output;
+        if (format.isCsv()) {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(encoded, StandardCharsets.UTF_8))) {
+                return writeCsv(rows, writer);
+            }
+        }
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(encoded)) {
+            return writeJson(rows, generator);
+        }
+    }
+
+    /**
+     * Записывает строки в формате CSV: заголовок "name,parent", затем по строке на категорию.
+     *
+     * @param rows Строки выгрузки.
+     * @param writer Поток для записи текста.
+     * @return Количество записанных строк.
+     * @throws IOException если произошла ошибка записи.
+     */
+    private int writeCsv(Iterator<CategoryRow> rows, Writer writer) throws IOException {
+        writer.write("name,parent\n");
+        int count = 0;
+        while (rows.hasNext()) {
+            CategoryRow row = rows.next();
+            writeCsvValue(row.getName(), writer);
+            writer.write(',');
+            writeCsvValue(row.getParentName(), writer);
+            writer.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Записывает значение CSV, заключая его в кавычки, если это необходимо.
+     *
+     * @param value Значение (null записывается как пустая строка).
+     * @param writer Поток для записи текста.
+     * @throws IOException если произошла ошибка записи.
+     */
+    private void writeCsvValue(String value, Writer writer) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"'); // Кавычки внутри значения удваиваются
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Записывает строки в формате JSON: массив объектов {"name": ..., "parent": ...}.
+     *
+     * @param rows Строки выгрузки.
+     * @param generator Генератор JSON.
+     * @return Количество записанных строк.
+     * @throws IOException если произошла ошибка записи.
+     */
+    private int writeJson(Iterator<CategoryRow> rows, JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        int count = 0;
+        while (rows.hasNext()) {
+            CategoryRow row = rows.next();
+            generator.writeStartObject();
+            generator.writeStringField("name", row.getName());
+            generator.writeStringField("parent", row.getParentName());
+            generator.writeEndObject();
+            count++;
+        }
+        generator.writeEndArray();
+        return count;
+    }
+
+    /**
+     * Читающая сторона канала выгрузки. Если запись завершилась ошибкой, чтение
+     * бросает IOException, а не возвращает конец файла: иначе была бы отправлена обрезанная выгрузка.
+     */
+    private static final class ExportInputStream extends FilterInputStream {
+
+        // Ошибка записи; устанавливается до закрытия записывающей стороны канала
+        private volatile Throwable failure;
+
+        ExportInputStream(InputStream in) {
+            super(in);
+        }
+
+        void fail(Throwable cause) {
+            failure = cause;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkFailure();
+            int b = super.read();
+            if (b == -1) {
+                checkFailure();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkFailure();
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                checkFailure();
+            }
+            return n;
+        }
+
+        private void checkFailure() throws IOException {
+            Throwable cause = failure;
+            if (cause != null) {
+                throw new IOException("Выгрузка категорий прервана ошибкой.", cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.orekhov.pandew.telegrambot.jfr.CountingInputStream;
+import net.orekhov.pandew.telegrambot.jfr.FileParseEvent;
+import net.orekhov.pandew.telegrambot.upload.UploadRows;
+import org.springframework.stereotype.Service;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Сервис потоковой загрузки категорий из компактных форматов CSV и JSON.
+ * Файл разбирается по мере чтения, без промежуточной копии содержимого:
+ * пары (имя, родитель) складываются в плоский буфер строк, который затем
+ * проверяется целиком и только после этого сохраняется в базе данных.
+ */
+@Service
+public class StreamingImportService {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Читает строки файла CSV или JSON в буфер для проверки перед сохранением.
+     * CSV-файл должен начинаться со строки заголовков и содержать два столбца: имя и родитель.
+     * JSON-файл должен содержать массив объектов с полями "name" и "parent".
+     *
+     * @param inputStream входной поток данных файла.
+     * @param format формат файла (CSV или JSON, со сжатием или без).
+     * @return строки файла.
+     * @throws IOException если произошла ошибка чтения или файл имеет неверный формат.
+     */
+    public UploadRows readRows(InputStream inputStream, ExportFormat format) throws IOException {
+        if (format == ExportFormat.XLSX) {
+            throw new IllegalArgumentException("Формат XLSX загружается сервисом ExcelImportService.");
+        }
+
+        // Событие JFR с длительностью разбора, количеством строк и размером файла
+        FileParseEvent event = new FileParseEvent();
+        event.begin();
+        CountingInputStream countingStream = new CountingInputStream(inputStream);
+        UploadRows rows = new UploadRows();
+        try {
+            parse(countingStream, format, rows);
+            return rows;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.format = format.getExtension();
+                event.rowCount = rows.size();
+                event.bytes = countingStream.getCount();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Разбирает файл CSV или JSON, распаковывая его при необходимости.
+     *
+     * @param inputStream входной поток данных файла.
+     * @param format формат файла.
+     * @param rows буфер строк файла.
+     * @throws IOException если произошла ошибка чтения или файл имеет неверный формат.
+     */
+    private void parse(InputStream inputStream, ExportFormat format, UploadRows rows) throws IOException {
+        InputStream decoded = format.isGzip() ? new GZIPInputStream(inputStream, 8192) : inputStream;
+        if (format.isCsv()) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(decoded, StandardCharsets.UTF_8))) {
+                readCsv(reader, rows);
+                return;
+            }
+        }
+        try (JsonParser parser = JSON_FACTORY.createParser(decoded)) {
+            readJson(parser, rows);
+        }
+    }
+
+    /**
+     * Разбирает CSV по одному символу, поддерживая значения в кавычках.
+     *
+     * @param reader поток текста CSV.
+     * @param rows буфер строк файла (без заголовка).
+     * @throws IOException если произошла ошибка чтения.
+     */
+    private void readCsv(Reader reader, UploadRows rows) throws IOException {
+        StringBuilder value = new StringBuilder();
+        String[] fields = new String[2];
+        int fieldIndex = 0;
+        boolean quoted = false;
+        boolean header = true;
+
+        // Номер текущей строки файла и строки, с которой началась текущая запись CSV
+        int line = 1;
+        int rowLine = 1;
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                line++;
+            }
+            if (quoted) {
+                if (c != '"') {
+                    value.append((char) c);
+                } else {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        value.append('"'); // Удвоенная кавычка внутри значения
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fieldIndex = storeField(fields, fieldIndex, value);
+            } else if (c == '\n') {
+                fieldIndex = storeField(fields, fieldIndex, value);
+                if (!header) {
+                    addRow(fields, fieldIndex, rowLine, rows);
+                }
+                header = false;
+                fieldIndex = 0;
+                fields[0] = null;
+                fields[1] = null;
+                rowLine = line;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+        }
+
+        // Последняя строка без перевода строки в конце файла
+        if (value.length() > 0 || fieldIndex > 0) {
+            fieldIndex = storeField(fields, fieldIndex, value);
+            if (!header) {
+                addRow(fields, fieldIndex, rowLine, rows);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет накопленное значение в очередное поле строки CSV.
+     * Лишние столбцы после второго игнорируются.
+     *
+     * @return индекс следующего поля.
+     */
+    private int storeField(String[] fields, int fieldIndex, StringBuilder value) {
+        if (fieldIndex < fields.length) {
+            fields[fieldIndex] = value.toString();
+        }
+        value.setLength(0);
+        return fieldIndex + 1;
+    }
+
+    /**
+     * Добавляет одну строку CSV в буфер. Пустые строки пропускаются;
+     * строка без имени категории добавляется, чтобы проверка сообщила о ней с номером строки.
+     */
+    private void addRow(String[] fields, int fieldCount, int line, UploadRows rows) {
+        if (fieldCount == 1 && (fields[0] == null || fields[0].isEmpty())) {
+            return;
+        }
+        rows.add(fields[0], fields[1], line);
+    }
+
+    /**
+     * Разбирает JSON-массив объектов {"name": ..., "parent": ...} потоковым парсером.
+     * Номером строки для сообщений об ошибках служит номер объекта в массиве.
+     *
+     * @param parser парсер JSON.
+     * @param rows буфер строк файла.
+     * @throws IOException если произошла ошибка чтения или JSON имеет неверную структуру.
+     */
+    private void readJson(JsonParser parser, UploadRows rows) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Ожидался JSON-массив категорий.");
+        }
+
+        int index = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            String name = null;
+            String parentName = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    name = parser.getValueAsString();
+                } else if ("parent".equals(field)) {
+                    parentName = parser.getValueAsString();
+                } else {
+                    parser.skipChildren(); // Неизвестные поля пропускаем
+                }
+            }
+            rows.add(name, parentName, ++index);
+        }
+
+        if (token != JsonToken.END_ARRAY) {
+            throw new IOException("Ожидался объект категории или конец массива.");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Набор блокировок, выбираемых по ключу (например, по id родительской категории).
+ * Действия с одинаковым ключом выполняются по очереди, а с ключами из разных полос — параллельно.
+ * Число блокировок фиксировано, поэтому память не растет с количеством ключей.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Создать набор блокировок.
+     *
+     * @param stripes количество блокировок, степень двойки
+     */
+    StripedLocks(int stripes) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Количество блокировок должно быть степенью двойки.");
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = stripes - 1;
+    }
+
+    /**
+     * Выполнить действие под блокировкой, соответствующей ключу.
+     *
+     * @param key    ключ
+     * @param action действие
+     * @return результат действия
+     */
+    <T> T withLock(long key, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(key)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripe(long key) {
+        // Перемешиваем биты, чтобы последовательные id распределялись по всем полосам
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
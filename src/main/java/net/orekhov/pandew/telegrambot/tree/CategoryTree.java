@@ -0,0 +1,619 @@
+package net.orekhov.pandew.telegrambot.tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Компактное представление дерева категорий на примитивных массивах.
+ * Узлы нумеруются подряд: 0 — виртуальный корень, к которому подвешены все корневые категории,
+ * 1..size() — категории в порядке возрастания идентификатора. Связи хранятся в массивах
+ * parent / firstChild / nextSibling, названия — в общей таблице строк без повторов.
+ *
+ * Дерево обходится в глубину без рекурсии, после чего для каждого узла известны глубина
+ * и диапазон его поддерева в порядке обхода (preorder). Узлы с одинаковым названием связаны
+ * в цепочки по возрастанию id, поэтому поиск по названию не перебирает все узлы.
+ * Это позволяет отображать, выгружать и искать категории без графа объектов Category
+ * и без ленивой загрузки дочерних коллекций.
+ *
+ * Перемещение и переименование категорий применяются к массивам на месте
+ * ({@link #move(int, int)}, {@link #rename(int, String)}), без повторной загрузки из базы данных.
+ * Перемещение только перевешивает узел в списках детей, а порядок обхода, глубины и диапазоны
+ * поддеревьев пересчитываются один раз при первом чтении после перемещений.
+ * Изменять дерево можно только при исключительном доступе, который обеспечивает {@code CategoryTreeCache};
+ * чтение из нескольких потоков допускается, отложенный пересчет обхода выполняется под монитором дерева.
+ */
+public final class CategoryTree {
+
+    /**
+     * Индекс виртуального корня дерева.
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * Значение «нет узла» в массивах связей.
+     */
+    public static final int NONE = -1;
+
+    private final int size;
+    private final long[] ids;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] prevSibling;
+    private final int[] nameRef;
+    private String[] names;
+    private final Map<String, Integer> nameIds;
+
+    // Цепочки узлов с одинаковым названием: первый узел для каждой строки таблицы названий и следующий узел
+    private int[] firstByName;
+    private final int[] nextByName;
+
+    // Результаты обхода в глубину; после перемещения устаревают до следующего чтения
+    private final int[] order;
+    private final int[] position;
+    private final int[] subtreeEnd;
+    private final int[] depth;
+    private int reachable;
+    private volatile boolean traversed;
+
+    private CategoryTree(int size, long[] ids, int[] parent, int[] nameRef, Map<String, Integer> nameIds) {
+        this.size = size;
+        this.ids = ids;
+        this.parent = parent;
+        this.nameRef = nameRef;
+        this.nameIds = nameIds;
+        this.names = new String[Math.max(nameIds.size(), 1)];
+        nameIds.forEach((name, ref) -> names[ref] = name);
+        this.firstChild = new int[size + 1];
+        this.nextSibling = new int[size + 1];
+        this.prevSibling = new int[size + 1];
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+        Arrays.fill(prevSibling, NONE);
+        this.firstByName = new int[names.length];
+        this.nextByName = new int[size + 1];
+        Arrays.fill(firstByName, NONE);
+
+        // Добавляем узлы в начало списков в обратном порядке, чтобы списки шли по возрастанию id
+        for (int node = size; node >= 1; node--) {
+            int p = parent[node];
+            nextSibling[node] = firstChild[p];
+            if (firstChild[p] != NONE) {
+                prevSibling[firstChild[p]] = node;
+            }
+            firstChild[p] = node;
+
+            nextByName[node] = firstByName[nameRef[node]];
+            firstByName[nameRef[node]] = node;
+        }
+
+        this.order = new int[size + 1];
+        this.position = new int[size + 1];
+        this.subtreeEnd = new int[size + 1];
+        this.depth = new int[size + 1];
+        this.reachable = traverse();
+        this.traversed = true;
+    }
+
+    /**
+     * Пересчитать порядок обхода, если после перемещения он устарел.
+     * Читатели могут обращаться к дереву одновременно, поэтому пересчет выполняется под монитором,
+     * а запись флага после пересчета публикует массивы обхода остальным потокам.
+     */
+    private void ensureTraversed() {
+        if (!traversed) {
+            synchronized (this) {
+                if (!traversed) {
+                    reachable = traverse();
+                    traversed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Обходит дерево в глубину без рекурсии и стека, используя ссылки на родителя.
+     * Узлы, недостижимые из корня (например, из-за цикла в данных), в обход не попадают.
+     *
+     * @return количество посещенных узлов, включая виртуальный корень
+     */
+    private int traverse() {
+        Arrays.fill(position, NONE);
+        int pos = 0;
+        order[pos] = ROOT;
+        position[ROOT] = pos++;
+        depth[ROOT] = -1;
+
+        int node = ROOT;
+        while (true) {
+            if (firstChild[node] != NONE) {
+                node = firstChild[node];
+            } else {
+                while (node != ROOT && nextSibling[node] == NONE) {
+                    subtreeEnd[node] = pos;
+                    node = parent[node];
+                }
+                subtreeEnd[node] = pos;
+                if (node == ROOT) {
+                    return pos;
+                }
+                node = nextSibling[node];
+            }
+            depth[node] = depth[parent[node]] + 1;
+            order[pos] = node;
+            position[node] = pos++;
+        }
+    }
+
+    /**
+     * Количество категорий в дереве (без виртуального корня).
+     *
+     * @return количество категорий
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long id(int node) {
+        return ids[node];
+    }
+
+    public String name(int node) {
+        return node == ROOT ? null : names[nameRef[node]];
+    }
+
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * Глубина узла: 0 для корневых категорий, -1 для виртуального корня.
+     *
+     * @param node индекс узла
+     * @return глубина узла
+     */
+    public int depth(int node) {
+        ensureTraversed();
+        return depth[node];
+    }
+
+    /**
+     * Найти узел по идентификатору категории двоичным поиском.
+     *
+     * @param id идентификатор категории
+     * @return индекс узла или {@link #NONE}, если категории нет в дереве
+     */
+    public int indexOf(long id) {
+        int found = Arrays.binarySearch(ids, 1, size + 1, id);
+        return found > 0 ? found : NONE;
+    }
+
+    /**
+     * Найти первую (с наименьшим id) категорию с заданным названием.
+     *
+     * @param name название категории
+     * @return индекс узла или {@link #NONE}, если категория не найдена
+     */
+    public int findByName(String name) {
+        Integer ref = nameIds.get(name);
+        return ref == null ? NONE : firstByName[ref];
+    }
+
+    /**
+     * Найти все категории с заданным названием.
+     * Перебирается только цепочка узлов с этим названием.
+     *
+     * @param name название категории
+     * @return индексы узлов в порядке возрастания id
+     */
+    public int[] findAllByName(String name) {
+        Integer ref = nameIds.get(name);
+        if (ref == null) {
+            return new int[0];
+        }
+        int count = 0;
+        for (int node = firstByName[ref]; node != NONE; node = nextByName[node]) {
+            count++;
+        }
+        int[] found = new int[count];
+        count = 0;
+        for (int node = firstByName[ref]; node != NONE; node = nextByName[node]) {
+            found[count++] = node;
+        }
+        return found;
+    }
+
+    /**
+     * Найти дочерний узел с заданным названием.
+     * Перебирается цепочка узлов с этим названием, а не список детей родителя.
+     *
+     * @param parentNode индекс родительского узла
+     * @param name       название категории
+     * @return индекс дочернего узла или {@link #NONE}, если такого нет
+     */
+    public int findChild(int parentNode, String name) {
+        Integer ref = nameIds.get(name);
+        if (ref == null) {
+            return NONE;
+        }
+        for (int node = firstByName[ref]; node != NONE; node = nextByName[node]) {
+            if (parent[node] == parentNode) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Проверить, является ли узел предком другого узла (или совпадает с ним).
+     * Проверка идет по массиву родителей вверх от узла, без обращения к базе данных.
+     *
+     * @param ancestor предполагаемый предок
+     * @param node     проверяемый узел
+     * @return true, если ancestor лежит на пути от node к корню
+     */
+    public boolean isAncestor(int ancestor, int node) {
+        for (int current = node; current != NONE; current = parent[current]) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверить, что деревья содержат одинаковые категории с одинаковыми родителями и названиями.
+     *
+     * @param other другое дерево
+     * @return true, если содержимое деревьев совпадает
+     */
+    public boolean contentEquals(CategoryTree other) {
+        if (other.size != size) {
+            return false;
+        }
+        for (int node = 1; node <= size; node++) {
+            if (ids[node] != other.ids[node] || parent[node] != other.parent[node]
+                    || !name(node).equals(other.name(node))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Переместить узел вместе с поддеревом под нового родителя.
+     * Узел исключается из списка детей старого родителя за O(1) и вставляется в список детей нового
+     * с сохранением порядка по возрастанию id. Глубины и диапазоны поддеревьев не пересчитываются
+     * сразу: обход повторяется один раз при первом чтении, сколько бы перемещений ни было до него.
+     *
+     * @param node      перемещаемый узел
+     * @param newParent новый родитель ({@link #ROOT}, чтобы сделать категорию корневой)
+     * @throws IllegalArgumentException если перемещение создаст цикл
+     */
+    public void move(int node, int newParent) {
+        if (node == ROOT || isAncestor(node, newParent)) {
+            throw new IllegalArgumentException("Нельзя переместить категорию внутрь её собственного поддерева.");
+        }
+        unlink(node);
+        parent[node] = newParent;
+        link(node);
+        traversed = false;
+    }
+
+    /**
+     * Переименовать узел. Новое название добавляется в общую таблицу строк, если его там нет,
+     * а узел переносится из цепочки старого названия в цепочку нового.
+     *
+     * @param node узел
+     * @param name новое название
+     */
+    public void rename(int node, String name) {
+        Integer ref = nameIds.get(name);
+        if (ref == null) {
+            ref = nameIds.size();
+            nameIds.put(name, ref);
+            if (ref == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+                int oldLength = firstByName.length;
+                firstByName = Arrays.copyOf(firstByName, names.length);
+                Arrays.fill(firstByName, oldLength, firstByName.length, NONE);
+            }
+            names[ref] = name;
+        }
+        if (nameRef[node] == ref) {
+            return;
+        }
+
+        // Исключаем узел из цепочки старого названия
+        int oldRef = nameRef[node];
+        if (firstByName[oldRef] == node) {
+            firstByName[oldRef] = nextByName[node];
+        } else {
+            int previous = firstByName[oldRef];
+            while (nextByName[previous] != node) {
+                previous = nextByName[previous];
+            }
+            nextByName[previous] = nextByName[node];
+        }
+
+        // Вставляем в цепочку нового названия с сохранением порядка по возрастанию id
+        nameRef[node] = ref;
+        if (firstByName[ref] == NONE || firstByName[ref] > node) {
+            nextByName[node] = firstByName[ref];
+            firstByName[ref] = node;
+            return;
+        }
+        int previous = firstByName[ref];
+        while (nextByName[previous] != NONE && nextByName[previous] < node) {
+            previous = nextByName[previous];
+        }
+        nextByName[node] = nextByName[previous];
+        nextByName[previous] = node;
+    }
+
+    /**
+     * Исключить узел из списка детей его родителя по ссылкам на соседей, без перебора списка.
+     */
+    private void unlink(int node) {
+        int p = parent[node];
+        int previous = prevSibling[node];
+        int next = nextSibling[node];
+        if (previous == NONE) {
+            firstChild[p] = next;
+        } else {
+            nextSibling[previous] = next;
+        }
+        if (next != NONE) {
+            prevSibling[next] = previous;
+        }
+        prevSibling[node] = NONE;
+        nextSibling[node] = NONE;
+    }
+
+    /**
+     * Вставить узел в список детей его родителя с сохранением порядка по возрастанию id.
+     */
+    private void link(int node) {
+        int p = parent[node];
+        int previous = NONE;
+        int next = firstChild[p];
+        while (next != NONE && next < node) {
+            previous = next;
+            next = nextSibling[next];
+        }
+        prevSibling[node] = previous;
+        nextSibling[node] = next;
+        if (previous == NONE) {
+            firstChild[p] = node;
+        } else {
+            nextSibling[previous] = node;
+        }
+        if (next != NONE) {
+            prevSibling[next] = node;
+        }
+    }
+
+    /**
+     * Количество узлов, достижимых из корня, включая виртуальный корень.
+     * Это длина последовательности {@link #nodeAt(int)}.
+     *
+     * @return количество позиций в порядке обхода
+     */
+    public int positions() {
+        ensureTraversed();
+        return reachable;
+    }
+
+    /**
+     * Узел, стоящий на заданной позиции в порядке обхода в глубину.
+     *
+     * @param position позиция от 0 (виртуальный корень) до {@link #positions()}
+     * @return индекс узла
+     */
+    public int nodeAt(int position) {
+        ensureTraversed();
+        return order[position];
+    }
+
+    /**
+     * Начало диапазона поддерева узла в порядке обхода (включительно, это сам узел).
+     *
+     * @param node индекс узла
+     * @return позиция узла или {@link #NONE}, если узел недостижим из корня
+     */
+    public int subtreeStart(int node) {
+        ensureTraversed();
+        return position[node];
+    }
+
+    /**
+     * Конец диапазона поддерева узла в порядке обхода (не включительно).
+     *
+     * @param node индекс узла
+     * @return позиция, следующая за последним потомком узла
+     */
+    public int subtreeEnd(int node) {
+        ensureTraversed();
+        return subtreeEnd[node];
+    }
+
+    /**
+     * Обойти поддерево узла в глубину (preorder), включая сам узел.
+     *
+     * @param node    индекс узла
+     * @param visitor обработчик узлов
+     */
+    public void forEachDepthFirst(int node, IntConsumer visitor) {
+        ensureTraversed();
+        if (position[node] == NONE) {
+            return;
+        }
+        for (int pos = position[node]; pos < subtreeEnd[node]; pos++) {
+            visitor.accept(order[pos]);
+        }
+    }
+
+    /**
+     * Обойти поддерево узла в ширину, включая сам узел.
+     *
+     * @param node    индекс узла
+     * @param visitor обработчик узлов
+     */
+    public void forEachBreadthFirst(int node, IntConsumer visitor) {
+        ensureTraversed();
+        if (position[node] == NONE) {
+            return;
+        }
+        int[] queue = new int[subtreeEnd[node] - position[node]];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = node;
+        while (head < tail) {
+            int current = queue[head++];
+            visitor.accept(current);
+            for (int child = firstChild[current]; child != NONE; child = nextSibling[child]) {
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Построитель дерева: принимает строки (id, parentId, name) в порядке возрастания id.
+     */
+    public static final class Builder {
+
+        private long[] ids = new long[16];
+        private long[] parentIds = new long[16];
+        private int[] nameRef = new int[16];
+        private final Map<String, Integer> nameTable = new HashMap<>();
+        private int size;
+
+        /**
+         * Добавить категорию.
+         *
+         * @param id       идентификатор категории (строго больше предыдущего)
+         * @param parentId идентификатор родителя или null для корневой категории
+         * @param name     название категории
+         * @return этот построитель
+         */
+        public Builder add(long id, Long parentId, String name) {
+            if (size > 0 && id <= ids[size]) {
+                throw new IllegalArgumentException("Категории должны добавляться по возрастанию id.");
+            }
+            if (size + 1 == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                parentIds = Arrays.copyOf(parentIds, capacity);
+                nameRef = Arrays.copyOf(nameRef, capacity);
+            }
+            size++;
+            ids[size] = id;
+            parentIds[size] = parentId != null ? parentId : 0L;
+            nameRef[size] = nameTable.computeIfAbsent(name, key -> nameTable.size());
+            return this;
+        }
+
+        /**
+         * Количество добавленных категорий.
+         *
+         * @return количество категорий
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Построить дерево.
+         * Категории, родителя которых нет среди добавленных строк (например, потомки скрытой
+         * категории, которая в дерево не загружается), в дерево не попадают вместе с их поддеревьями.
+         *
+         * @return дерево категорий
+         */
+        public CategoryTree build() {
+            long[] allIds = Arrays.copyOf(ids, size + 1);
+            int[] allParents = new int[size + 1];
+            allParents[ROOT] = NONE;
+            for (int node = 1; node <= size; node++) {
+                long parentId = parentIds[node];
+                int p = parentId == 0L ? ROOT : Arrays.binarySearch(allIds, 1, size + 1, parentId);
+                allParents[node] = p >= 0 ? p : NONE;
+            }
+
+            // Новые номера видимых узлов; NONE — узел скрыт
+            int[] index = visibleIndex(allParents);
+            int visible = 0;
+            for (int node = 1; node <= size; node++) {
+                if (index[node] != NONE) {
+                    visible++;
+                }
+            }
+            if (visible == size) {
+                return new CategoryTree(size, allIds, allParents, Arrays.copyOf(nameRef, size + 1), new HashMap<>(nameTable));
+            }
+
+            long[] finalIds = new long[visible + 1];
+            int[] parent = new int[visible + 1];
+            int[] finalNameRef = new int[visible + 1];
+            parent[ROOT] = NONE;
+            for (int node = 1; node <= size; node++) {
+                int target = index[node];
+                if (target != NONE) {
+                    finalIds[target] = allIds[node];
+                    parent[target] = index[allParents[node]];
+                    finalNameRef[target] = nameRef[node];
+                }
+            }
+            return new CategoryTree(visible, finalIds, parent, finalNameRef, new HashMap<>(nameTable));
+        }
+
+        /**
+         * Пронумеровать заново узлы, путь которых по родителям доходит до корня, сохраняя порядок id.
+         * Путь каждого узла проходится один раз: результат запоминается для всех узлов пути.
+         *
+         * @param parents индексы родителей ({@link #NONE}, если родитель не найден)
+         * @return новый индекс узла или {@link #NONE} для скрытого узла
+         */
+        private int[] visibleIndex(int[] parents) {
+            final byte unknown = 0, visible = 1, hidden = 2, onPath = 3;
+            byte[] state = new byte[size + 1];
+            state[ROOT] = visible;
+            int[] path = new int[size + 1];
+            for (int node = 1; node <= size; node++) {
+                int length = 0;
+                int current = node;
+                while (current != NONE && state[current] == unknown) {
+                    state[current] = onPath;
+                    path[length++] = current;
+                    current = parents[current];
+                }
+                // Путь закончился на известном узле, на отсутствующем родителе или замкнулся в цикл
+                byte result = current != NONE && state[current] == visible ? visible : hidden;
+                while (length > 0) {
+                    state[path[--length]] = result;
+                }
+            }
+
+            int[] index = new int[size + 1];
+            index[ROOT] = ROOT;
+            int next = 1;
+            for (int node = 1; node <= size; node++) {
+                index[node] = state[node] == visible ? next++ : NONE;
+            }
+            return index;
+        }
+    }
+}
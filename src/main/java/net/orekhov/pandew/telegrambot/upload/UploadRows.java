@@ -0,0 +1,59 @@
+package net.orekhov.pandew.telegrambot.upload;
+
+import java.util.Arrays;
+
+/**
+ * Строки загружаемого файла в плоском буфере: название категории, название родителя
+ * и номер строки в файле для сообщений об ошибках.
+ * Файл сначала целиком читается в буфер, проверяется {@link UploadValidator}
+ * и только после этого сохраняется в базе данных.
+ */
+public final class UploadRows {
+
+    private String[] names = new String[64];
+    private String[] parentNames = new String[64];
+    private int[] lines = new int[64];
+    private int size;
+
+    /**
+     * Добавить строку файла.
+     *
+     * @param name       название категории (null считается пустым)
+     * @param parentName название родителя или пустая строка для категории без родителя
+     * @param line       номер строки в файле (для JSON — номер объекта в массиве)
+     */
+    public void add(String name, String parentName, int line) {
+        if (size == names.length) {
+            int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            parentNames = Arrays.copyOf(parentNames, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        names[size] = name == null ? "" : name.trim();
+        parentNames[size] = parentName == null ? "" : parentName.trim();
+        lines[size] = line;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int row) {
+        return names[row];
+    }
+
+    /**
+     * Название родителя строки.
+     *
+     * @param row индекс строки в буфере
+     * @return название родителя или пустая строка
+     */
+    public String parentName(int row) {
+        return parentNames[row];
+    }
+
+    public int line(int row) {
+        return lines[row];
+    }
+}
@@ -0,0 +1,38 @@
+package net.orekhov.pandew.telegrambot.upload;
+
+import java.util.List;
+
+/**
+ * Загружаемый файл не прошел проверку. Содержит ошибки по строкам файла;
+ * в базу данных из такого файла ничего не сохраняется.
+ */
+public class UploadValidationException extends RuntimeException {
+
+    // Сколько ошибок показывать пользователю в одном сообщении
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final List<String> errors;
+
+    /**
+     * Создает исключение со списком ошибок.
+     *
+     * @param errors ошибки в порядке строк файла, например "Строка 3: ..."
+     */
+    public UploadValidationException(List<String> errors) {
+        super(describe(errors));
+        this.errors = List.copyOf(errors);
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    private static String describe(List<String> errors) {
+        StringBuilder message = new StringBuilder("Файл не загружен, найдено ошибок: ").append(errors.size()).append('.');
+        errors.stream().limit(MAX_REPORTED_ERRORS).forEach(error -> message.append('\n').append(error));
+        if (errors.size() > MAX_REPORTED_ERRORS) {
+            message.append("\n... и ещё ").append(errors.size() - MAX_REPORTED_ERRORS).append('.');
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,262 @@
+package net.orekhov.pandew.telegrambot.upload;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Проверка загружаемого файла до сохранения в базе данных.
+ *
+ * Строки файла ссылаются на родителя по названию, поэтому проверяется, что:
+ * <ul>
+ *     <li>у каждой строки есть название, и названия в файле не повторяются;</li>
+ *     <li>родитель каждой строки есть в файле или (при объединении со всем деревом) в дереве категорий;</li>
+ *     <li>ссылки на родителей внутри файла не образуют циклов.</li>
+ * </ul>
+ * Проверки строк выполняются параллельно в общем пуле fork-join, циклы ищутся системой
+ * непересекающихся множеств на массиве индексов строк. Если ошибок нет, строки упорядочиваются
+ * так, чтобы родитель из файла сохранялся раньше своих потомков, даже если в файле он ниже.
+ */
+@Component
+public class UploadValidator {
+
+    // Строк на одну задачу fork-join; файлы меньше этого размера проверяются в вызывающем потоке
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    // Родитель не указан: корневая категория или дочерняя категория родителя прививки
+    private static final int NO_PARENT = -1;
+
+    // Родитель не найден в файле и ищется в дереве категорий
+    private static final int EXTERNAL_PARENT = -2;
+
+    private final CategoryService categoryService;
+
+    @Autowired
+    public UploadValidator(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Проверить строки файла и определить порядок их сохранения.
+     *
+     * @param rows  строки файла
+     * @param graft true, если файл прививается под категорию: тогда родитель строки
+     *              ищется только среди строк файла
+     * @return индексы строк в порядке сохранения: родители из файла раньше потомков
+     * @throws UploadValidationException если в файле есть ошибки
+     */
+    public int[] validate(UploadRows rows, boolean graft) {
+        int size = rows.size();
+        String[] errors = new String[size];
+        int[] parentIndex = new int[size];
+
+        // Первое вхождение каждого названия: по нему строки находят родителя из файла
+        ConcurrentHashMap<String, Integer> firstIndex = new ConcurrentHashMap<>(Math.max(16, size * 4 / 3 + 1));
+        forEachRow(size, row -> {
+            if (!rows.name(row).isEmpty()) {
+                firstIndex.merge(rows.name(row), row, Math::min);
+            }
+        });
+
+        Set<String> externalParents = ConcurrentHashMap.newKeySet();
+        forEachRow(size, row -> errors[row] = checkRow(rows, row, graft, firstIndex, parentIndex, externalParents));
+
+        // Родители вне файла должны быть видимыми категориями дерева
+        if (!externalParents.isEmpty()) {
+            Set<String> missing = categoryService.readTree(tree -> {
+                Set<String> result = new HashSet<>();
+                for (String name : externalParents) {
+                    if (tree.findByName(name) == CategoryTree.NONE) {
+                        result.add(name);
+                    }
+                }
+                return result;
+            });
+            for (int row = 0; row < size; row++) {
+                if (parentIndex[row] == EXTERNAL_PARENT && missing.contains(rows.parentName(row)) && errors[row] == null) {
+                    errors[row] = "родительская категория '" + rows.parentName(row) + "' не найдена ни в файле, ни в дереве.";
+                }
+            }
+        }
+
+        findCycles(rows, parentIndex, errors);
+
+        List<String> report = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (errors[row] != null) {
+                report.add("Строка " + rows.line(row) + ": " + errors[row]);
+            }
+        }
+        if (!report.isEmpty()) {
+            throw new UploadValidationException(report);
+        }
+        return parentsFirst(parentIndex);
+    }
+
+    /**
+     * Проверить одну строку и найти её родителя.
+     *
+     * @return текст ошибки или null, если строка корректна
+     */
+    private static String checkRow(UploadRows rows, int row, boolean graft, ConcurrentHashMap<String, Integer> firstIndex,
+                                   int[] parentIndex, Set<String> externalParents) {
+        parentIndex[row] = NO_PARENT;
+        String name = rows.name(row);
+        String parentName = rows.parentName(row);
+        if (name.isEmpty()) {
+            return "не указано название категории.";
+        }
+        int first = firstIndex.get(name);
+        if (first != row) {
+            return parentName.equals(rows.parentName(first))
+                    ? "строка повторяет строку " + rows.line(first) + "."
+                    : "категория '" + name + "' уже указана в строке " + rows.line(first) + " с другим родителем.";
+        }
+        if (parentName.isEmpty()) {
+            return null;
+        }
+        if (parentName.equals(name)) {
+            return "категория не может быть родителем самой себя.";
+        }
+        Integer parent = firstIndex.get(parentName);
+        if (parent != null) {
+            parentIndex[row] = parent;
+            return null;
+        }
+        if (graft) {
+            return "родительская категория '" + parentName + "' не найдена в файле.";
+        }
+        parentIndex[row] = EXTERNAL_PARENT;
+        externalParents.add(parentName);
+        return null;
+    }
+
+    /**
+     * Найти циклы в ссылках на родителей внутри файла.
+     * У каждой строки не больше одного родителя, поэтому ссылка, соединяющая строки,
+     * уже попавшие в одно множество, замыкает цикл, и он проходится по ссылкам от родителя.
+     * Ссылка, замыкающая цикл, отбрасывается, чтобы цикл сообщался один раз.
+     */
+    private static void findCycles(UploadRows rows, int[] parentIndex, String[] errors) {
+        int size = parentIndex.length;
+        int[] set = new int[size];
+        for (int row = 0; row < size; row++) {
+            set[row] = row;
+        }
+        for (int row = 0; row < size; row++) {
+            int parent = parentIndex[row];
+            if (parent < 0) {
+                continue;
+            }
+            int rowRoot = find(set, row);
+            int parentRoot = find(set, parent);
+            if (rowRoot != parentRoot) {
+                set[rowRoot] = parentRoot;
+                continue;
+            }
+
+            StringBuilder cycle = new StringBuilder("цикл родителей: строки ").append(rows.line(row));
+            for (int node = parent; node != row && node >= 0; node = parentIndex[node]) {
+                cycle.append(" → ").append(rows.line(node));
+            }
+            cycle.append(" → ").append(rows.line(row)).append('.');
+            parentIndex[row] = NO_PARENT;
+            if (errors[row] == null) {
+                errors[row] = cycle.toString();
+            }
+        }
+    }
+
+    /**
+     * Найти представителя множества строки, сокращая путь вдвое.
+     */
+    private static int find(int[] set, int row) {
+        while (set[row] != row) {
+            set[row] = set[set[row]];
+            row = set[row];
+        }
+        return row;
+    }
+
+    /**
+     * Упорядочить строки по уровням: сначала строки без родителя в файле, затем их дочерние
+     * и так далее. На каждом уровне сохраняется порядок строк в файле.
+     */
+    private static int[] parentsFirst(int[] parentIndex) {
+        int size = parentIndex.length;
+        int[] firstChild = new int[size];
+        int[] nextSibling = new int[size];
+        Arrays.fill(firstChild, NO_PARENT);
+        int[] order = new int[size];
+        int tail = 0;
+        for (int row = size - 1; row >= 0; row--) {
+            int parent = parentIndex[row];
+            if (parent >= 0) {
+                nextSibling[row] = firstChild[parent];
+                firstChild[parent] = row;
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (parentIndex[row] < 0) {
+                order[tail++] = row;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            for (int child = firstChild[order[head]]; child != NO_PARENT; child = nextSibling[child]) {
+                order[tail++] = child;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Выполнить действие для каждой строки, разбивая диапазон на задачи fork-join.
+     * Действие для разных строк не должно писать в общие неконкурентные структуры.
+     */
+    private static void forEachRow(int size, IntConsumer action) {
+        RowRange range = new RowRange(0, size, action);
+        if (size <= PARALLEL_THRESHOLD) {
+            range.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(range);
+        }
+    }
+
+    /**
+     * Задача fork-join над диапазоном строк.
+     */
+    private static final class RowRange extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        RowRange(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int row = from; row < to; row++) {
+                    action.accept(row);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowRange(from, middle, action), new RowRange(middle, to, action));
+        }
+    }
+}
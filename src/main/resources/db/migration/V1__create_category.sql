@@ -0,0 +1,8 @@
+-- Таблица категорий: дерево задается ссылкой на родительскую категорию.
+-- Имя категории уникально среди дочерних категорий одного родителя.
+CREATE TABLE IF NOT EXISTS category (
+    id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name      VARCHAR(255) NOT NULL,
+    parent_id BIGINT REFERENCES category (id),
+    CONSTRAINT uk_category_name_parent UNIQUE (name, parent_id)
+);
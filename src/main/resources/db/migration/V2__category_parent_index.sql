@@ -0,0 +1,2 @@
+-- Индекс для выборки дочерних категорий и рекурсивных запросов по поддереву.
+CREATE INDEX IF NOT EXISTS idx_category_parent_id ON category (parent_id);
@@ -0,0 +1,6 @@
+-- Мягкое удаление: команда удаления скрывает корень поддерева одной записью,
+-- а потомки физически удаляются фоновым процессом порциями.
+ALTER TABLE category ADD COLUMN IF NOT EXISTS deleted BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Частичный индекс для поиска скрытых категорий фоновым процессом.
+CREATE INDEX IF NOT EXISTS idx_category_deleted ON category (id) WHERE deleted;
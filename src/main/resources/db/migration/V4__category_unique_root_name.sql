@@ -0,0 +1,15 @@
+-- Ограничение уникальности (name, parent_id) не действует для корневых категорий:
+-- в PostgreSQL значения NULL не равны друг другу, поэтому одинаковые корни добавлялись без конфликта.
+-- Уникальность названий видимых корневых категорий задается частичным уникальным индексом;
+-- скрытые удалением корни (deleted, parent_id = NULL) в него не входят.
+
+-- Уже существующие повторы переименовываются: к названию всех корней, кроме первого по id,
+-- добавляется их id. Поддеревья повторов сохраняются без изменений.
+UPDATE category c
+SET name = LEFT(c.name, 252 - LENGTH(CAST(c.id AS TEXT))) || ' (' || c.id || ')'
+WHERE c.parent_id IS NULL
+  AND NOT c.deleted
+  AND EXISTS (SELECT 1 FROM category d
+              WHERE d.parent_id IS NULL AND NOT d.deleted AND d.name = c.name AND d.id < c.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_category_root_name ON category (name) WHERE parent_id IS NULL AND NOT deleted;
@@ -0,0 +1,130 @@
+package net.orekhov.pandew.telegrambot.journal;
+
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты журнала изменений: восстановление дерева из снимка и записей после него,
+ * отбрасывание неполной записи и записи с неверной контрольной суммой в конце файла.
+ * Транзакции в тестах нет, поэтому записи дописываются в журнал сразу.
+ */
+class ChangeJournalTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Дерево в снимке:
+     * <pre>
+     * A (1)
+     *   C (3)
+     * B (2)
+     * </pre>
+     */
+    private static CategoryTree base() {
+        return new CategoryTree.Builder()
+                .add(1, null, "A")
+                .add(2, null, "B")
+                .add(3, 1L, "C")
+                .build();
+    }
+
+    @Test
+    void restoreReplaysRecordsWrittenAfterSnapshot() throws IOException {
+        ChangeJournal journal = open();
+        assertNull(journal.restore());
+        journal.recordAdd(1, null, "A"); // Учтена в снимке и удаляется из журнала вместе с ним
+        journal.snapshot(base());
+        journal.recordAdd(4, 3L, "D");
+        journal.recordMove(3, 2);
+        journal.recordRename(1, "A2");
+        journal.recordAdd(5, null, "E");
+        journal.recordDelete(List.of(5L));
+        journal.close();
+
+        journal = open();
+        CategoryTree restored = journal.restore();
+        journal.close();
+
+        CategoryTree expected = new CategoryTree.Builder()
+                .add(1, null, "A2")
+                .add(2, null, "B")
+                .add(3, 2L, "C")
+                .add(4, 3L, "D")
+                .build();
+        assertTrue(expected.contentEquals(restored));
+    }
+
+    @Test
+    void tornRecordAtEndIsTruncatedOnOpen() throws IOException {
+        ChangeJournal journal = open();
+        journal.snapshot(base());
+        journal.recordRename(1, "A2");
+        journal.close();
+        long validLength = Files.size(journalFile());
+
+        // Начало записи без окончания: длина тела и часть номера записи
+        Files.write(journalFile(), new byte[]{0, 0, 0, 30, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        journal = open();
+        assertEquals(validLength, Files.size(journalFile()));
+        journal.recordRename(2, "B2"); // Дописывается сразу после последней целой записи
+        journal.close();
+
+        journal = open();
+        CategoryTree restored = journal.restore();
+        journal.close();
+
+        assertTrue(renamed("A2", "B2").contentEquals(restored));
+    }
+
+    @Test
+    void recordWithWrongChecksumIsDropped() throws IOException {
+        ChangeJournal journal = open();
+        journal.snapshot(base());
+        journal.recordRename(1, "A2");
+        long validLength = Files.size(journalFile());
+        journal.recordRename(2, "B2");
+        journal.close();
+
+        // Последний байт названия во второй записи, перед контрольной суммой
+        byte[] bytes = Files.readAllBytes(journalFile());
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(journalFile(), bytes);
+
+        journal = open();
+        assertEquals(validLength, Files.size(journalFile()));
+        CategoryTree restored = journal.restore();
+        journal.close();
+
+        assertTrue(renamed("A2", "B").contentEquals(restored));
+    }
+
+    private ChangeJournal open() throws IOException {
+        ChangeJournal journal = new ChangeJournal(true, directory.toString());
+        journal.open();
+        return journal;
+    }
+
+    private Path journalFile() {
+        return directory.resolve("tree.journal");
+    }
+
+    private static CategoryTree renamed(String a, String b) {
+        return new CategoryTree.Builder()
+                .add(1, null, a)
+                .add(2, null, b)
+                .add(3, 1L, "C")
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package net.orekhov.pandew.telegrambot.service;
+
+import net.orekhov.pandew.telegrambot.upload.UploadRows;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Тесты чтения файлов CSV и JSON в буфер строк: значения и номера строк для сообщений об ошибках.
+ */
+class StreamingImportServiceTest {
+
+    private final StreamingImportService service = new StreamingImportService();
+
+    @Test
+    void csvRowsKeepStartLineOfEachRecord() throws IOException {
+        String csv = "name,parent\r\n"
+                + "a,\r\n"
+                + "\"multi\nline\",a\n"
+                + "\n"
+                + "\"say \"\"hi\"\"\",a\n"
+                + "b,\"a\"";
+
+        UploadRows rows = read(csv, ExportFormat.CSV);
+
+        assertEquals(4, rows.size());
+        assertRow(rows, 0, "a", "", 2);
+        assertRow(rows, 1, "multi\nline", "a", 3);
+        assertRow(rows, 2, "say \"hi\"", "a", 6);
+        assertRow(rows, 3, "b", "a", 7);
+    }
+
+    @Test
+    void csvRowWithoutNameIsKeptForValidation() throws IOException {
+        UploadRows rows = read("name,parent\n,a\nb\n", ExportFormat.CSV);
+
+        assertEquals(2, rows.size());
+        assertRow(rows, 0, "", "a", 2);
+        assertRow(rows, 1, "b", "", 3);
+    }
+
+    @Test
+    void jsonRowsAreNumberedByObject() throws IOException {
+        String json = "[{\"name\": \"a\"}, {\"name\": \"b\", \"parent\": \"a\", \"extra\": [1, 2]}, {\"parent\": \"a\"}]";
+
+        UploadRows rows = read(json, ExportFormat.JSON);
+
+        assertEquals(3, rows.size());
+        assertRow(rows, 0, "a", "", 1);
+        assertRow(rows, 1, "b", "a", 2);
+        assertRow(rows, 2, "", "a", 3);
+    }
+
+    @Test
+    void jsonWithoutArrayIsRejected() {
+        assertThrows(IOException.class, () -> read("{\"name\": \"a\"}", ExportFormat.JSON));
+    }
+
+    private UploadRows read(String content, ExportFormat format) throws IOException {
+        return service.readRows(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    private static void assertRow(UploadRows rows, int row, String name, String parentName, int line) {
+        assertEquals(name, rows.name(row));
+        assertEquals(parentName, rows.parentName(row));
+        assertEquals(line, rows.line(row));
+    }
+}
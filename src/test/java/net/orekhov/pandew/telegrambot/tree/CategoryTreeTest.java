@@ -0,0 +1,271 @@
+package net.orekhov.pandew.telegrambot.tree;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты компактного дерева категорий: порядок обхода, диапазоны поддеревьев и глубины
+ * после построения и перемещения, порядок детей, отбрасывание недостижимых строк.
+ */
+class CategoryTreeTest {
+
+    /**
+     * Дерево:
+     * <pre>
+     * A (1)
+     *   C (3)
+     *     E (5)
+     *   D (4)
+     * B (2)
+     * </pre>
+     */
+    private static CategoryTree sample() {
+        return new CategoryTree.Builder()
+                .add(1, null, "A")
+                .add(2, null, "B")
+                .add(3, 1L, "C")
+                .add(4, 1L, "D")
+                .add(5, 3L, "E")
+                .build();
+    }
+
+    @Test
+    void preorderPositionsAfterBuild() {
+        CategoryTree tree = sample();
+
+        assertEquals(List.of("A", "C", "E", "D", "B"), preorder(tree));
+        assertEquals(6, tree.positions());
+        assertEquals(0, tree.subtreeStart(CategoryTree.ROOT));
+        assertEquals(6, tree.subtreeEnd(CategoryTree.ROOT));
+    }
+
+    @Test
+    void subtreeRangesAndDepthAfterBuild() {
+        CategoryTree tree = sample();
+
+        assertRange(tree, "A", 1, 5, 0);
+        assertRange(tree, "C", 2, 4, 1);
+        assertRange(tree, "E", 3, 4, 2);
+        assertRange(tree, "D", 4, 5, 1);
+        assertRange(tree, "B", 5, 6, 0);
+        assertEquals(-1, tree.depth(CategoryTree.ROOT));
+    }
+
+    @Test
+    void moveRecomputesPositionsRangesAndDepth() {
+        CategoryTree tree = sample();
+
+        tree.move(node(tree, "C"), node(tree, "B"));
+
+        assertEquals(List.of("A", "D", "B", "C", "E"), preorder(tree));
+        assertRange(tree, "A", 1, 3, 0);
+        assertRange(tree, "D", 2, 3, 1);
+        assertRange(tree, "B", 3, 6, 0);
+        assertRange(tree, "C", 4, 6, 1);
+        assertRange(tree, "E", 5, 6, 2);
+        assertEquals(node(tree, "B"), tree.parent(node(tree, "C")));
+    }
+
+    @Test
+    void moveToRootMakesCategoryTopLevel() {
+        CategoryTree tree = sample();
+
+        tree.move(node(tree, "E"), CategoryTree.ROOT);
+
+        assertEquals(List.of("A", "C", "D", "B", "E"), preorder(tree));
+        assertRange(tree, "E", 5, 6, 0);
+        assertRange(tree, "C", 2, 3, 1);
+    }
+
+    @Test
+    void moveIntoOwnSubtreeIsRejected() {
+        CategoryTree tree = sample();
+
+        assertThrows(IllegalArgumentException.class, () -> tree.move(node(tree, "A"), node(tree, "E")));
+        assertThrows(IllegalArgumentException.class, () -> tree.move(node(tree, "C"), node(tree, "C")));
+        assertEquals(List.of("A", "C", "E", "D", "B"), preorder(tree));
+    }
+
+    @Test
+    void relinkedChildrenKeepIdOrder() {
+        CategoryTree tree = new CategoryTree.Builder()
+                .add(1, null, "P")
+                .add(2, 1L, "a")
+                .add(3, null, "Q")
+                .add(4, 1L, "b")
+                .add(5, 3L, "x")
+                .add(6, 1L, "c")
+                .build();
+        int p = node(tree, "P");
+
+        // В середину списка детей
+        tree.move(node(tree, "x"), p);
+        assertEquals(List.of("a", "b", "x", "c"), children(tree, p));
+
+        // Из начала списка и обратно в начало
+        tree.move(node(tree, "a"), node(tree, "Q"));
+        assertEquals(List.of("b", "x", "c"), children(tree, p));
+        assertEquals(List.of("a"), children(tree, node(tree, "Q")));
+        tree.move(node(tree, "a"), p);
+        assertEquals(List.of("a", "b", "x", "c"), children(tree, p));
+
+        // Из конца списка в конец списка корневых категорий
+        tree.move(node(tree, "c"), CategoryTree.ROOT);
+        assertEquals(List.of("P", "Q", "c"), children(tree, CategoryTree.ROOT));
+        assertEquals(List.of("P", "a", "b", "x", "Q", "c"), preorder(tree));
+    }
+
+    @Test
+    void severalMovesBeforeReadGiveSameOrderAsOneByOne() {
+        CategoryTree tree = sample();
+
+        tree.move(node(tree, "E"), CategoryTree.ROOT);
+        tree.move(node(tree, "A"), node(tree, "B"));
+        tree.move(node(tree, "C"), node(tree, "E"));
+
+        assertEquals(List.of("B", "A", "D", "E", "C"), preorder(tree));
+        assertRange(tree, "B", 1, 4, 0);
+        assertRange(tree, "A", 2, 4, 1);
+        assertRange(tree, "D", 3, 4, 2);
+        assertRange(tree, "E", 4, 6, 0);
+        assertRange(tree, "C", 5, 6, 1);
+    }
+
+    @Test
+    void nameIndexFollowsRenames() {
+        CategoryTree tree = new CategoryTree.Builder()
+                .add(1, null, "P")
+                .add(2, 1L, "x")
+                .add(3, null, "Q")
+                .add(4, 3L, "y")
+                .add(5, 3L, "x")
+                .build();
+
+        assertArrayEquals(new int[]{2, 5}, tree.findAllByName("x"));
+        assertEquals(5, tree.findChild(node(tree, "Q"), "x"));
+
+        // Новое название, которого не было в таблице строк
+        tree.rename(2, "z");
+        assertArrayEquals(new int[]{5}, tree.findAllByName("x"));
+        assertEquals(2, tree.findByName("z"));
+        assertEquals(CategoryTree.NONE, tree.findChild(node(tree, "P"), "x"));
+
+        // Вставка в середину и в начало существующей цепочки
+        tree.rename(4, "x");
+        tree.rename(2, "x");
+        assertArrayEquals(new int[]{2, 4, 5}, tree.findAllByName("x"));
+        assertArrayEquals(new int[0], tree.findAllByName("y"));
+        assertArrayEquals(new int[0], tree.findAllByName("z"));
+        assertEquals(4, tree.findChild(node(tree, "Q"), "x"));
+
+        // Из середины цепочки
+        tree.rename(4, "y");
+        assertArrayEquals(new int[]{2, 5}, tree.findAllByName("x"));
+        assertEquals(4, tree.findByName("y"));
+    }
+
+    @Test
+    void buildDropsRowsWithMissingParentTogetherWithSubtrees() {
+        CategoryTree tree = new CategoryTree.Builder()
+                .add(1, null, "A")
+                .add(2, 99L, "orphan")
+                .add(3, 2L, "orphanChild")
+                .add(4, 1L, "B")
+                .build();
+
+        assertEquals(2, tree.size());
+        assertEquals(CategoryTree.NONE, tree.findByName("orphan"));
+        assertEquals(CategoryTree.NONE, tree.findByName("orphanChild"));
+        assertEquals(CategoryTree.NONE, tree.indexOf(2));
+        assertEquals(tree.indexOf(1), tree.parent(tree.indexOf(4)));
+        assertEquals(List.of("A", "B"), preorder(tree));
+    }
+
+    @Test
+    void buildDropsCyclesAndRowsHangingOffThem() {
+        CategoryTree tree = new CategoryTree.Builder()
+                .add(1, null, "A")
+                .add(2, 3L, "X")
+                .add(3, 2L, "Y")
+                .add(4, 3L, "Z")
+                .add(5, 5L, "Self")
+                .add(6, 1L, "B")
+                .build();
+
+        assertEquals(2, tree.size());
+        assertArrayEquals(new int[0], tree.findAllByName("Z"));
+        assertEquals(CategoryTree.NONE, tree.findByName("Self"));
+        assertEquals(List.of("A", "B"), preorder(tree));
+        assertEquals(3, tree.positions());
+    }
+
+    @Test
+    void builderRejectsNonAscendingIds() {
+        CategoryTree.Builder builder = new CategoryTree.Builder().add(2, null, "A");
+
+        assertThrows(IllegalArgumentException.class, () -> builder.add(2, null, "B"));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(1, null, "B"));
+    }
+
+    @Test
+    void contentEqualsComparesIdsParentsAndNames() {
+        assertTrue(sample().contentEquals(sample()));
+
+        CategoryTree renamed = sample();
+        renamed.rename(node(renamed, "D"), "D2");
+        assertFalse(sample().contentEquals(renamed));
+        renamed.rename(node(renamed, "D2"), "D");
+        assertTrue(sample().contentEquals(renamed));
+
+        CategoryTree moved = sample();
+        moved.move(node(moved, "E"), node(moved, "D"));
+        assertFalse(sample().contentEquals(moved));
+        CategoryTree expected = new CategoryTree.Builder()
+                .add(1, null, "A")
+                .add(2, null, "B")
+                .add(3, 1L, "C")
+                .add(4, 1L, "D")
+                .add(5, 4L, "E")
+                .build();
+        assertTrue(expected.contentEquals(moved));
+
+        CategoryTree smaller = new CategoryTree.Builder().add(1, null, "A").build();
+        assertFalse(sample().contentEquals(smaller));
+    }
+
+    private static int node(CategoryTree tree, String name) {
+        int node = tree.findByName(name);
+        assertTrue(node != CategoryTree.NONE, "Категория " + name + " не найдена");
+        return node;
+    }
+
+    private static void assertRange(CategoryTree tree, String name, int start, int end, int depth) {
+        int node = node(tree, name);
+        assertEquals(start, tree.subtreeStart(node), "начало поддерева " + name);
+        assertEquals(end, tree.subtreeEnd(node), "конец поддерева " + name);
+        assertEquals(depth, tree.depth(node), "глубина " + name);
+    }
+
+    private static List<String> preorder(CategoryTree tree) {
+        List<String> names = new ArrayList<>();
+        for (int pos = 1; pos < tree.positions(); pos++) {
+            names.add(tree.name(tree.nodeAt(pos)));
+        }
+        return names;
+    }
+
+    private static List<String> children(CategoryTree tree, int parent) {
+        List<String> names = new ArrayList<>();
+        for (int child = tree.firstChild(parent); child != CategoryTree.NONE; child = tree.nextSibling(child)) {
+            names.add(tree.name(child));
+        }
+        return names;
+    }
+}
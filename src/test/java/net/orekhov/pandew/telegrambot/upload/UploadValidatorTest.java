@@ -0,0 +1,187 @@
+package net.orekhov.pandew.telegrambot.upload;
+
+import net.orekhov.pandew.telegrambot.service.CategoryService;
+import net.orekhov.pandew.telegrambot.tree.CategoryTree;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тесты проверки загружаемого файла: порядок сохранения, повторы, отсутствующие родители и циклы.
+ * Строки файла в тестах нумеруются с 2, как строки CSV после заголовка.
+ */
+class UploadValidatorTest {
+
+    // Дерево категорий, в котором ищутся родители вне файла
+    private static final CategoryTree EXISTING = new CategoryTree.Builder()
+            .add(1, null, "Existing")
+            .build();
+
+    private final UploadValidator validator = new UploadValidator(new CategoryService() {
+        @Override
+        public <T> T readTree(Function<CategoryTree, T> reader) {
+            return reader.apply(EXISTING);
+        }
+    });
+
+    @Test
+    void parentBelowChildIsSavedFirst() {
+        UploadRows rows = rows("c", "b", "b", "a", "a", "", "x", "");
+
+        assertEquals(List.of("a", "x", "b", "c"), names(rows, validator.validate(rows, false)));
+    }
+
+    @Test
+    void siblingsKeepFileOrder() {
+        UploadRows rows = rows("b2", "a", "b1", "a", "a", "");
+
+        assertEquals(List.of("a", "b2", "b1"), names(rows, validator.validate(rows, true)));
+    }
+
+    @Test
+    void twoCycleIsReportedOnce() {
+        UploadRows rows = rows("a", "b", "b", "a", "root", "");
+
+        List<String> errors = errors(rows, false);
+
+        assertEquals(List.of("Строка 3: цикл родителей: строки 3 → 2 → 3."), errors);
+    }
+
+    @Test
+    void longerCycleIsReportedOnce() {
+        UploadRows rows = rows("a", "d", "b", "a", "c", "b", "d", "c", "leaf", "b");
+
+        List<String> errors = errors(rows, false);
+
+        assertEquals(List.of("Строка 5: цикл родителей: строки 5 → 4 → 3 → 2 → 5."), errors);
+    }
+
+    @Test
+    void selfParentIsReported() {
+        UploadRows rows = rows("a", "a");
+
+        assertEquals(List.of("Строка 2: категория не может быть родителем самой себя."), errors(rows, false));
+    }
+
+    @Test
+    void duplicateWithSameParentIsReported() {
+        UploadRows rows = rows("a", "", "b", "a", "b", "a");
+
+        assertEquals(List.of("Строка 4: строка повторяет строку 3."), errors(rows, false));
+    }
+
+    @Test
+    void duplicateWithDifferentParentIsReported() {
+        UploadRows rows = rows("a", "", "c", "", "b", "a", "b", "c");
+
+        assertEquals(List.of("Строка 5: категория 'b' уже указана в строке 4 с другим родителем."), errors(rows, false));
+    }
+
+    @Test
+    void missingNameIsReported() {
+        UploadRows rows = rows("a", "", "", "a");
+
+        assertEquals(List.of("Строка 3: не указано название категории."), errors(rows, false));
+    }
+
+    @Test
+    void parentFromTreeIsAcceptedWhenMerging() {
+        UploadRows rows = rows("a", "Existing", "b", "a");
+
+        assertEquals(List.of("a", "b"), names(rows, validator.validate(rows, false)));
+    }
+
+    @Test
+    void missingParentIsReportedWhenMerging() {
+        UploadRows rows = rows("a", "Nowhere", "b", "a");
+
+        assertEquals(List.of("Строка 2: родительская категория 'Nowhere' не найдена ни в файле, ни в дереве."),
+                errors(rows, false));
+    }
+
+    @Test
+    void parentOutsideFileIsReportedWhenGrafting() {
+        UploadRows rows = rows("a", "Existing", "b", "a", "c", "");
+
+        assertEquals(List.of("Строка 2: родительская категория 'Existing' не найдена в файле."), errors(rows, true));
+    }
+
+    @Test
+    void largeFileIsOrderedOnForkJoinPath() {
+        // Цепочка, в которой каждый родитель записан ниже своего потомка
+        int size = UploadValidator.PARALLEL_THRESHOLD * 3 + 7;
+        UploadRows rows = new UploadRows();
+        for (int i = 0; i < size; i++) {
+            rows.add("n" + i, i == size - 1 ? "" : "n" + (i + 1), i + 2);
+        }
+
+        int[] order = validator.validate(rows, false);
+
+        assertEquals(size, order.length);
+        for (int i = 0; i < size; i++) {
+            assertEquals(size - 1 - i, order[i]);
+        }
+    }
+
+    @Test
+    void largeFileErrorsAreFoundOnForkJoinPath() {
+        int size = UploadValidator.PARALLEL_THRESHOLD * 3;
+        UploadRows rows = new UploadRows();
+        for (int i = 0; i < size; i++) {
+            rows.add("n" + i, i == 0 ? "" : "n" + (i - 1), i + 2);
+        }
+        rows.add("n5", "n4", size + 2); // Повтор строки 7
+        rows.add("loopA", "loopB", size + 3);
+        rows.add("loopB", "loopA", size + 4);
+        rows.add("orphan", "Nowhere", size + 5);
+
+        List<String> errors = errors(rows, false);
+
+        assertEquals(List.of(
+                "Строка " + (size + 2) + ": строка повторяет строку 7.",
+                "Строка " + (size + 4) + ": цикл родителей: строки " + (size + 4) + " → " + (size + 3) + " → " + (size + 4) + ".",
+                "Строка " + (size + 5) + ": родительская категория 'Nowhere' не найдена ни в файле, ни в дереве."), errors);
+    }
+
+    @Test
+    void exceptionMessageListsErrorsWithLimit() {
+        UploadRows rows = new UploadRows();
+        for (int i = 0; i < 25; i++) {
+            rows.add("", "", i + 2);
+        }
+
+        UploadValidationException e = assertThrows(UploadValidationException.class, () -> validator.validate(rows, false));
+
+        assertEquals(25, e.getErrors().size());
+        assertTrue(e.getMessage().startsWith("Файл не загружен, найдено ошибок: 25."));
+        assertTrue(e.getMessage().endsWith("... и ещё 5."));
+    }
+
+    /**
+     * Строки файла из пар (название, родитель), начиная со строки 2.
+     */
+    private static UploadRows rows(String... pairs) {
+        UploadRows rows = new UploadRows();
+        for (int i = 0; i < pairs.length; i += 2) {
+            rows.add(pairs[i], pairs[i + 1], i / 2 + 2);
+        }
+        return rows;
+    }
+
+    private static List<String> names(UploadRows rows, int[] order) {
+        List<String> names = new ArrayList<>();
+        for (int row : order) {
+            names.add(rows.name(row));
+        }
+        return names;
+    }
+
+    private List<String> errors(UploadRows rows, boolean graft) {
+        return assertThrows(UploadValidationException.class, () -> validator.validate(rows, graft)).getErrors();
+    }
+}